@@ -0,0 +1,45 @@
+/*
+ * BatchReceiver.java
+ * 
+ * The incoming messages processor for batches
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.wanhive.iot.edge;
+
+import java.util.List;
+
+import com.wanhive.iot.protocol.Message;
+
+/**
+ * The incoming messages processor which receives the messages in batches, see
+ * {@link Executor#setBatchReceiver(BatchReceiver, int, int)}
+ * 
+ * @author amit
+ *
+ */
+public interface BatchReceiver {
+	/**
+	 * Processes a batch of incoming messages
+	 * 
+	 * @param messages The messages in the order of their arrival (never empty).
+	 *                 The list belongs to the receiver.
+	 */
+	public void receive(List<Message> messages);
+}
@@ -23,8 +23,11 @@
  */
 package com.wanhive.iot.edge;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -41,15 +44,33 @@ import com.wanhive.iot.protocol.Message;
  */
 public class Executor implements Runnable, AutoCloseable {
 	private static final String BAD_REQUEST = "Not allowed";
+	/**
+	 * Maximum number of messages read ahead of the batches
+	 */
+	private static final int MAX_STAGING = 4096;
 	private final Object notifier = new Object();
 	private boolean running = false; // The condition variable
 	private final AtomicBoolean stopped = new AtomicBoolean(true); // The status tracker
 
 	private Client client;
 	private Receiver receiver;
+	private BatchReceiver batchReceiver;
+	private int maxBatch;
+	private long linger;
+	private MessagePublisher publisher;
+	/**
+	 * Set by {@link #close()}, tells a requested stop from a failure
+	 */
+	private volatile boolean closing;
+	/**
+	 * The first failure of the reader or the writer
+	 */
+	private volatile Exception failure;
 	private Message outgoing;
 	private final BlockingQueue<Message> in;
 	private final BlockingQueue<Message> out;
+	private WaitStrategy writerWait = WaitStrategy.BLOCKING;
+	private volatile WaitStrategy consumerWait = WaitStrategy.BLOCKING;
 
 	/**
 	 * Stops the Executor and closes the Client.
@@ -100,14 +121,51 @@ public class Executor implements Runnable, AutoCloseable {
 	}
 
 	/**
-	 * Sets executor's Client. Existing Client is replaced, but not closed. Fails if
-	 * the Executor is running.
+	 * Creates an Executor that stores the incoming messages into the given queue.
+	 * A {@link RingBuffer} avoids lock contention between the producers.
+	 * 
+	 * @param client The Client to be used for communication
+	 * @param in     The queue for the incoming messages
+	 * @param out    The queue for the outgoing messages
+	 */
+	public Executor(Client client, BlockingQueue<Message> in, BlockingQueue<Message> out) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+		this.client = client;
+		this.in = in;
+		this.out = out;
+	}
+
+	/**
+	 * Creates an Executor that uses a Receiver to process the incoming messages
+	 * and the given queue for the outgoing messages.
+	 * 
+	 * @param client   The Client to be used for communication
+	 * @param receiver The Receiver for the incoming messages
+	 * @param out      The queue for the outgoing messages
+	 */
+	public Executor(Client client, Receiver receiver, BlockingQueue<Message> out) {
+		if (out == null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+		this.client = client;
+		this.receiver = receiver;
+		this.in = null;
+		this.out = out;
+	}
+
+	/**
+	 * Sets executor's Client. Existing Client is replaced, but not closed. A new
+	 * Client makes a closed Executor runnable again. Fails if the Executor is
+	 * running.
 	 * 
 	 * @param client The Client to use with the Executor
 	 */
 	public void setClient(Client client) {
 		if (!isRunning()) {
 			this.client = client;
+			this.closing = false;
 		} else {
 			throw new IllegalStateException(BAD_REQUEST);
 		}
@@ -126,6 +184,87 @@ public class Executor implements Runnable, AutoCloseable {
 			throw new IllegalArgumentException(BAD_REQUEST);
 		} else {
 			this.receiver = receiver;
+			this.batchReceiver = null;
+			this.publisher = null;
+		}
+	}
+
+	/**
+	 * Sets the Receiver for the batches of incoming messages. The reader thread
+	 * queues the messages as it reads them and a separate thread delivers them: a
+	 * batch holds the first queued message, all the messages queued behind it and
+	 * the ones which arrive within the linger time after it, up to the maximum
+	 * batch size. Replaces the Receiver. Fails if the Executor is running. Also
+	 * fails if the Executor was created with an incoming queue.
+	 * 
+	 * @param receiver The BatchReceiver to use
+	 * @param maxBatch The maximum number of messages in a batch
+	 * @param linger   The maximum time to wait for more messages in milliseconds
+	 *                 (set to 0 to deliver what is queued without waiting)
+	 */
+	public void setBatchReceiver(BatchReceiver receiver, int maxBatch, int linger) {
+		if (isRunning()) {
+			throw new IllegalStateException(BAD_REQUEST);
+		} else if (in != null || maxBatch < 1 || linger < 0) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		} else {
+			this.batchReceiver = receiver;
+			this.maxBatch = maxBatch;
+			this.linger = TimeUnit.MILLISECONDS.toNanos(linger);
+			this.receiver = null;
+			this.publisher = null;
+		}
+	}
+
+	/**
+	 * Creates a publisher of the incoming messages which delivers them to a
+	 * subscriber on demand, and installs it as the Receiver. The stream completes
+	 * when the Executor is closed and fails when the connection fails. Fails if
+	 * the Executor is running. Also fails if the Executor was created with an
+	 * incoming queue.
+	 * 
+	 * @param capacity The number of messages buffered while there is no demand
+	 * @param overflow The policy for a full buffer
+	 * @return The publisher
+	 */
+	public MessagePublisher createPublisher(int capacity, MessagePublisher.Overflow overflow) {
+		if (isRunning()) {
+			throw new IllegalStateException(BAD_REQUEST);
+		} else if (in != null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		} else {
+			MessagePublisher p = new MessagePublisher(capacity, overflow);
+			this.receiver = p;
+			this.batchReceiver = null;
+			this.publisher = p;
+			return p;
+		}
+	}
+
+	/**
+	 * Sets the wait strategy of the writer thread and of the consumers of the
+	 * incoming queue. Fails if the Executor is running.
+	 * 
+	 * @param strategy The wait strategy, see {@link WaitStrategy#BLOCKING}
+	 */
+	public void setWaitStrategy(WaitStrategy strategy) {
+		setWaitStrategy(strategy, strategy);
+	}
+
+	/**
+	 * Sets the wait strategies. Fails if the Executor is running.
+	 * 
+	 * @param writer   Used by the writer thread to wait for an outgoing message
+	 * @param consumer Used by {@link #take()} to wait for an incoming message
+	 */
+	public void setWaitStrategy(WaitStrategy writer, WaitStrategy consumer) {
+		if (isRunning()) {
+			throw new IllegalStateException(BAD_REQUEST);
+		} else if (writer == null || consumer == null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		} else {
+			this.writerWait = writer;
+			this.consumerWait = consumer;
 		}
 	}
 
@@ -166,7 +305,7 @@ public class Executor implements Runnable, AutoCloseable {
 	 */
 	public Message take() throws InterruptedException {
 		if (in != null) {
-			return in.take();
+			return consumerWait.take(in);
 		} else {
 			throw new IllegalStateException(BAD_REQUEST);
 		}
@@ -183,12 +322,18 @@ public class Executor implements Runnable, AutoCloseable {
 
 	@Override
 	public void run() {
+		final BatchReceiver batches = batchReceiver;
+		final BlockingQueue<Message> staging = (batches != null)
+				? new RingBuffer<Message>(Math.min(maxBatch, MAX_STAGING))
+				: null;
 
 		Thread reader = new Thread(() -> {
 			Logger.getGlobal().info("Reader started");
 			try {
 				while (true) {
-					if (receiver != null) {
+					if (staging != null) {
+						staging.put(client.receive());
+					} else if (receiver != null) {
 						receiver.receive(client.receive());
 					} else if (in != null) {
 						in.put(client.receive());
@@ -197,34 +342,56 @@ public class Executor implements Runnable, AutoCloseable {
 					}
 				}
 			} catch (Exception e) {
-				close();
+				fail(e);
 			} finally {
 				Logger.getGlobal().info("Reader stopped");
 			}
 		});
 
+		final WaitStrategy strategy = writerWait;
 		Thread writer = new Thread(() -> {
 			Logger.getGlobal().info("Writer started");
 			try {
 				while (true) {
 					if (outgoing == null) {
-						outgoing = out.take();
+						outgoing = strategy.take(out);
 					}
 					client.send(outgoing);
 					outgoing = null;
 				}
 			} catch (Exception e) {
-				close();
+				fail(e);
 			} finally {
 				Logger.getGlobal().info("Writer stopped");
 			}
 		});
 
+		Thread batcher = null;
+		if (batches != null) {
+			batcher = new Thread(() -> {
+				Logger.getGlobal().info("Batcher started");
+				try {
+					while (true) {
+						batches.receive(receiveBatch(staging));
+					}
+				} catch (Exception e) {
+					fail(e);
+				} finally {
+					Logger.getGlobal().info("Batcher stopped");
+				}
+			});
+		}
+
 		try {
+			// A close requested before the start is kept
+			failure = null;
 			stopped.set(false);
 			synchronized (notifier) {
 				reader.start();
 				writer.start();
+				if (batcher != null) {
+					batcher.start();
+				}
 				running = true;
 				while (running) {
 					notifier.wait();
@@ -246,13 +413,57 @@ public class Executor implements Runnable, AutoCloseable {
 			} catch (Exception e2) {
 
 			}
+
+			try {
+				if (batcher != null) {
+					batcher.interrupt();
+					batcher.join();
+				}
+			} catch (Exception e2) {
+
+			}
+			if (publisher != null) {
+				publisher.terminate(failure);
+			}
 			Logger.getGlobal().info("Executor stopped");
 			stopped.set(true);
 		}
 	}
 
+	/**
+	 * Waits for a message read by the reader thread, then collects the ones which
+	 * follow it until the batch is full or the linger time has passed
+	 */
+	private List<Message> receiveBatch(BlockingQueue<Message> staging) throws InterruptedException {
+		List<Message> batch = new ArrayList<Message>();
+		batch.add(staging.take());
+		staging.drainTo(batch, maxBatch - 1);
+		final long deadline = System.nanoTime() + linger;
+		while (batch.size() < maxBatch) {
+			long remaining = deadline - System.nanoTime();
+			Message message = (remaining > 0) ? staging.poll(remaining, TimeUnit.NANOSECONDS) : null;
+			if (message == null) {
+				break;
+			}
+			batch.add(message);
+			staging.drainTo(batch, maxBatch - batch.size());
+		}
+		return batch;
+	}
+
+	/**
+	 * Records the first failure of the reader or the writer and stops
+	 */
+	private void fail(Exception e) {
+		if (!closing && failure == null) {
+			failure = e;
+		}
+		stop();
+	}
+
 	@Override
 	public void close() {
+		closing = true;
 		stop();
 	}
 }
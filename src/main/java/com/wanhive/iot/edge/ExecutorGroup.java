@@ -0,0 +1,277 @@
+/*
+ * ExecutorGroup.java
+ *
+ * Sharded IO engine over several connections
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.wanhive.iot.protocol.Client;
+import com.wanhive.iot.protocol.Message;
+
+/**
+ * Group of Executors, one per connection, which acts as a single IO engine. The
+ * outgoing messages are spread over the connections (shards) by a routing key,
+ * and the messages with the same key always travel over the same connection in
+ * the order in which they were queued. The incoming messages of all the
+ * connections are merged into a single queue or a single Receiver.
+ * 
+ * The connections may belong to the same identity or to several identities,
+ * and may lead to one or to several hubs. With {@link Routing#TOPIC} the
+ * subscriptions are routed like the publications, so that every topic is served
+ * by a single connection.
+ * 
+ * The group stops as soon as any of its connections fails.
+ * 
+ * @author amit
+ *
+ */
+public class ExecutorGroup implements Runnable, AutoCloseable {
+	private static final String BAD_REQUEST = "Not allowed";
+	private final Executor[] shards;
+	private final BlockingQueue<Message> in;
+	private final Routing routing;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicBoolean stopped = new AtomicBoolean(true);
+	private volatile WaitStrategy consumerWait = WaitStrategy.BLOCKING;
+
+	/**
+	 * Decides which connection carries an outgoing message
+	 * 
+	 * @author amit
+	 *
+	 */
+	public enum Routing {
+		/**
+		 * By the topic (session) byte, preserves the order of a topic
+		 */
+		TOPIC,
+		/**
+		 * By the destination identity, preserves the order of a destination
+		 */
+		DESTINATION,
+		/**
+		 * In turns, balances the load but does not preserve any order
+		 */
+		ROUND_ROBIN
+	}
+
+	/**
+	 * Creates a group that stores the incoming messages into a shared queue
+	 * 
+	 * @param clients     The connections, one per shard
+	 * @param routing     The routing policy of the outgoing messages
+	 * @param inCapacity  The capacity of the shared incoming messages queue
+	 * @param outCapacity The capacity of each shard's outgoing messages queue
+	 */
+	public ExecutorGroup(Client[] clients, Routing routing, int inCapacity, int outCapacity) {
+		this(clients, routing, new RingBuffer<Message>(inCapacity), null, outCapacity);
+	}
+
+	/**
+	 * Creates a group that delivers the incoming messages of all the shards to a
+	 * Receiver. The Receiver is called concurrently by the shards' reader threads
+	 * and must be thread safe.
+	 * 
+	 * @param clients     The connections, one per shard
+	 * @param routing     The routing policy of the outgoing messages
+	 * @param receiver    The Receiver for the incoming messages
+	 * @param outCapacity The capacity of each shard's outgoing messages queue
+	 */
+	public ExecutorGroup(Client[] clients, Routing routing, Receiver receiver, int outCapacity) {
+		this(clients, routing, null, receiver, outCapacity);
+	}
+
+	private ExecutorGroup(Client[] clients, Routing routing, BlockingQueue<Message> in, Receiver receiver,
+			int outCapacity) {
+		if (clients == null || clients.length == 0 || routing == null || (in == null && receiver == null)) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+
+		this.in = in;
+		this.routing = routing;
+		this.shards = new Executor[clients.length];
+		for (int i = 0; i < clients.length; ++i) {
+			if (in != null) {
+				shards[i] = new Executor(clients[i], in, new RingBuffer<Message>(outCapacity));
+			} else {
+				shards[i] = new Executor(clients[i], receiver, new RingBuffer<Message>(outCapacity));
+			}
+		}
+	}
+
+	/**
+	 * Sets the wait strategies of the shards' writer threads and of the consumers
+	 * of the incoming queue. Fails if the group is running.
+	 * 
+	 * @param writer   Used by the writer threads to wait for an outgoing message
+	 * @param consumer Used by {@link #take()} to wait for an incoming message
+	 */
+	public void setWaitStrategy(WaitStrategy writer, WaitStrategy consumer) {
+		if (isRunning()) {
+			throw new IllegalStateException(BAD_REQUEST);
+		} else if (consumer == null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+
+		for (Executor shard : shards) {
+			shard.setWaitStrategy(writer, consumer);
+		}
+		this.consumerWait = consumer;
+	}
+
+	/**
+	 * Returns the number of shards
+	 * 
+	 * @return The number of connections in the group
+	 */
+	public int size() {
+		return shards.length;
+	}
+
+	/**
+	 * Returns the shard which carries the given message
+	 * 
+	 * @param message The outgoing message
+	 * @return The index of the shard [0, {@link #size()})
+	 */
+	public int shardOf(Message message) {
+		switch (routing) {
+		case TOPIC:
+			return (message.getSession() & 0xff) % shards.length;
+		case DESTINATION:
+			return index(message.getDestination());
+		default:
+			return (next.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+		}
+	}
+
+	/**
+	 * Tries to put a message into the outgoing queue of its shard
+	 * 
+	 * @param message Message to send out
+	 * @return true on success, false otherwise
+	 */
+	public boolean offer(Message message) {
+		return shards[shardOf(message)].offer(message);
+	}
+
+	/**
+	 * Puts a message into the outgoing queue of its shard
+	 * 
+	 * @param message Message to send out
+	 * @throws InterruptedException
+	 */
+	public void put(Message message) throws InterruptedException {
+		shards[shardOf(message)].put(message);
+	}
+
+	/**
+	 * Returns true if the shared incoming queue contains at least one message
+	 * 
+	 * @return true if the incoming queue is not empty, false otherwise
+	 */
+	public boolean hasMessage() {
+		return (in != null) && !in.isEmpty();
+	}
+
+	/**
+	 * Returns a message from the shared incoming queue
+	 * 
+	 * @return A message from the incoming queue
+	 * @throws InterruptedException
+	 */
+	public Message take() throws InterruptedException {
+		if (in != null) {
+			return consumerWait.take(in);
+		} else {
+			throw new IllegalStateException(BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * Checks group's running state
+	 * 
+	 * @return true if the group is running, false otherwise
+	 */
+	public boolean isRunning() {
+		return !stopped.get();
+	}
+
+	@Override
+	public void run() {
+		Thread[] threads = new Thread[shards.length];
+		for (int i = 0; i < shards.length; ++i) {
+			final Executor shard = shards[i];
+			threads[i] = new Thread(() -> {
+				try {
+					shard.run();
+				} finally {
+					// One failed connection stops the group
+					close();
+				}
+			}, "ExecutorGroup-" + i);
+		}
+
+		try {
+			stopped.set(false);
+			for (Thread thread : threads) {
+				thread.start();
+			}
+
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			close();
+			Thread.currentThread().interrupt();
+		} finally {
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (Exception e) {
+
+				}
+			}
+			Logger.getGlobal().info("Executor group stopped");
+			stopped.set(true);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (Executor shard : shards) {
+			shard.close();
+		}
+	}
+
+	/**
+	 * Maps a 64-bit key on a shard
+	 */
+	private int index(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) ((h >>> 32) % shards.length);
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * MessagePublisher.java
+ *
+ * Demand-driven stream of the incoming messages
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wanhive.iot.protocol.Message;
+
+/**
+ * Receiver which publishes the incoming messages to a single subscriber at the
+ * subscriber's own pace. The interfaces follow the Reactive Streams
+ * specification (java.util.concurrent.Flow in Java 9 and later), so that an
+ * adapter to any reactive library is a few lines of code. The subscriber asks
+ * for messages with {@link Subscription#request(long)}; the messages which
+ * arrive in the meantime are buffered, and the {@link Overflow} policy decides
+ * what happens when the buffer is full.
+ * 
+ * The subscriber is called on the thread which delivered the message (the
+ * reader thread of an {@link Executor}) or on the thread which requested more
+ * messages, never on two threads at once. See
+ * {@link Executor#createPublisher(int, Overflow)}.
+ * 
+ * @author amit
+ *
+ */
+public class MessagePublisher implements Receiver {
+	private static final String BAD_REQUEST = "Not allowed";
+	private final Object lock = new Object();
+	private final ArrayDeque<Message> buffer;
+	private final int capacity;
+	private final Overflow overflow;
+	/**
+	 * Serializes the calls to the subscriber
+	 */
+	private final AtomicInteger wip = new AtomicInteger();
+	private Subscriber subscriber;
+	private long requested;
+	private long dropped;
+	private boolean cancelled;
+	private boolean done;
+	private Throwable error;
+	private boolean terminated;
+
+	/**
+	 * What to do with an incoming message when the buffer is full
+	 * 
+	 * @author amit
+	 *
+	 */
+	public enum Overflow {
+		/**
+		 * Wait for the subscriber, the connection is not read in the meantime
+		 */
+		BLOCK,
+		/**
+		 * Discard the oldest buffered message
+		 */
+		DROP_OLDEST,
+		/**
+		 * Replace the newest buffered message, so that the subscriber always gets
+		 * the latest message
+		 */
+		CONFLATE
+	}
+
+	/**
+	 * Receives the messages (java.util.concurrent.Flow.Subscriber)
+	 * 
+	 * @author amit
+	 *
+	 */
+	public interface Subscriber {
+		/**
+		 * Called once, before any other method
+		 * 
+		 * @param subscription The subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called for every message, never more often than requested
+		 * 
+		 * @param message The next message
+		 */
+		void onNext(Message message);
+
+		/**
+		 * Called once when the stream failed, no more calls follow
+		 * 
+		 * @param throwable The cause
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called once when the stream ended, no more calls follow
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Links a subscriber with the publisher
+	 * (java.util.concurrent.Flow.Subscription)
+	 * 
+	 * @author amit
+	 *
+	 */
+	public interface Subscription {
+		/**
+		 * Asks for more messages
+		 * 
+		 * @param n The number of additional messages (Long.MAX_VALUE for all)
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the delivery and discards the buffered messages
+		 */
+		void cancel();
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity The capacity of the buffer
+	 * @param overflow The policy for a full buffer
+	 */
+	public MessagePublisher(int capacity, Overflow overflow) {
+		if (capacity < 1 || overflow == null) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+		this.capacity = capacity;
+		this.overflow = overflow;
+		this.buffer = new ArrayDeque<Message>(Math.min(capacity, 1024));
+	}
+
+	/**
+	 * Subscribes to the messages. Only one subscriber is supported, any other
+	 * subscriber receives an error.
+	 * 
+	 * @param s The subscriber
+	 */
+	public void subscribe(Subscriber s) {
+		if (s == null) {
+			throw new NullPointerException();
+		}
+
+		boolean accepted;
+		synchronized (lock) {
+			accepted = (subscriber == null);
+			if (accepted) {
+				subscriber = s;
+			}
+		}
+
+		if (accepted) {
+			s.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+					MessagePublisher.this.request(n);
+				}
+
+				@Override
+				public void cancel() {
+					MessagePublisher.this.cancel();
+				}
+			});
+			drain();
+		} else {
+			s.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+
+				}
+
+				@Override
+				public void cancel() {
+
+				}
+			});
+			s.onError(new IllegalStateException(BAD_REQUEST));
+		}
+	}
+
+	/**
+	 * Buffers a message for the subscriber, applying the overflow policy if the
+	 * buffer is full
+	 */
+	@Override
+	public void receive(Message message) {
+		synchronized (lock) {
+			if (cancelled || done) {
+				return;
+			}
+
+			if (buffer.size() >= capacity) {
+				switch (overflow) {
+				case BLOCK:
+					try {
+						while (buffer.size() >= capacity && !cancelled && !done) {
+							lock.wait();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+
+					if (cancelled || done) {
+						return;
+					}
+					break;
+				case DROP_OLDEST:
+					buffer.poll();
+					dropped++;
+					break;
+				default:
+					buffer.pollLast();
+					dropped++;
+					break;
+				}
+			}
+			buffer.offer(message);
+		}
+		drain();
+	}
+
+	/**
+	 * Ends the stream after the buffered messages have been delivered
+	 * 
+	 * @param cause The cause of a failure, null for a normal completion
+	 */
+	public void terminate(Throwable cause) {
+		synchronized (lock) {
+			if (done) {
+				return;
+			}
+			done = true;
+			error = cause;
+			lock.notifyAll();
+		}
+		drain();
+	}
+
+	/**
+	 * Returns the number of messages discarded by the overflow policy
+	 * 
+	 * @return The number of dropped or replaced messages
+	 */
+	public long getDropped() {
+		synchronized (lock) {
+			return dropped;
+		}
+	}
+
+	/**
+	 * Returns the number of buffered messages
+	 * 
+	 * @return The number of messages waiting for demand
+	 */
+	public int size() {
+		synchronized (lock) {
+			return buffer.size();
+		}
+	}
+
+	private void request(long n) {
+		synchronized (lock) {
+			if (cancelled) {
+				return;
+			} else if (n <= 0) {
+				// Rule 3.9 of the specification
+				buffer.clear();
+				error = new IllegalArgumentException(BAD_REQUEST);
+				done = true;
+				lock.notifyAll();
+			} else {
+				requested = (requested + n < 0) ? Long.MAX_VALUE : requested + n;
+			}
+		}
+		drain();
+	}
+
+	private void cancel() {
+		synchronized (lock) {
+			cancelled = true;
+			buffer.clear();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Delivers the buffered messages as far as the demand allows. Only one thread
+	 * drains at a time, the others leave their work to it.
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+
+		int missed = 1;
+		do {
+			final Subscriber s;
+			synchronized (lock) {
+				s = subscriber;
+			}
+
+			if (s != null) {
+				while (true) {
+					Message message = null;
+					boolean complete = false;
+					Throwable cause = null;
+					synchronized (lock) {
+						if (terminated || cancelled) {
+							// No signals after a cancellation
+							break;
+						} else if (requested > 0 && !buffer.isEmpty()) {
+							message = buffer.poll();
+							if (requested != Long.MAX_VALUE) {
+								requested--;
+							}
+							lock.notifyAll();
+						} else if (done && buffer.isEmpty()) {
+							terminated = true;
+							complete = true;
+							cause = error;
+						} else {
+							break;
+						}
+					}
+
+					if (!complete) {
+						s.onNext(message);
+					} else if (cause != null) {
+						s.onError(cause);
+					} else {
+						s.onComplete();
+					}
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+}
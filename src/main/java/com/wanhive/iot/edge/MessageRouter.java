@@ -0,0 +1,173 @@
+/*
+ * MessageRouter.java
+ *
+ * Dispatches the incoming messages by their context
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import com.wanhive.iot.protocol.Message;
+import com.wanhive.iot.protocol.bean.MessageContext;
+
+/**
+ * Receiver which routes the incoming messages to the handlers registered for
+ * their context (command, qualifier and status), see
+ * {@link com.wanhive.iot.protocol.RequestContext} and
+ * {@link com.wanhive.iot.protocol.ResponseContext}. User-defined commands are
+ * routed the same way. The context is packed into a single int key which
+ * indexes a three-level table of dense arrays, so that routing a message takes
+ * three array loads and no allocation, whatever the number of handlers.
+ * 
+ * A handler may be registered for a command and a qualifier with any status,
+ * it is used when no handler matches the exact status. Messages without a
+ * handler go to the default handler. The handlers can be changed at any time,
+ * routing never locks.
+ * 
+ * @author amit
+ *
+ */
+public class MessageRouter implements Receiver {
+	/**
+	 * Index of the any-status handler in a qualifier's row
+	 */
+	private static final int ANY_STATUS = 256;
+	/**
+	 * Handlers indexed by [command][qualifier][status], copied on write
+	 */
+	private volatile Receiver[][][] table = new Receiver[256][][];
+	private volatile Receiver defaultHandler;
+
+	/**
+	 * Packs a message context into an int key
+	 * 
+	 * @param command   The command classifier
+	 * @param qualifier The command qualifier
+	 * @param status    The status code
+	 * @return The key (24 bits: command, qualifier, status)
+	 */
+	public static int key(byte command, byte qualifier, byte status) {
+		return ((command & 0xff) << 16) | ((qualifier & 0xff) << 8) | (status & 0xff);
+	}
+
+	/**
+	 * Packs a message context into an int key
+	 * 
+	 * @param ctx The message context
+	 * @return The key (24 bits: command, qualifier, status)
+	 */
+	public static int key(MessageContext ctx) {
+		return key(ctx.getCommand(), ctx.getQualifier(), ctx.getStatus());
+	}
+
+	/**
+	 * Packs the context of a message into an int key
+	 * 
+	 * @param message The message
+	 * @return The key (24 bits: command, qualifier, status)
+	 */
+	public static int key(Message message) {
+		return key(message.getCommand(), message.getQualifier(), message.getStatus());
+	}
+
+	/**
+	 * Sets the handler of a message context
+	 * 
+	 * @param ctx     The message context
+	 * @param handler The handler, set to null to remove
+	 */
+	public void setHandler(MessageContext ctx, Receiver handler) {
+		setHandler(ctx.getCommand(), ctx.getQualifier(), ctx.getStatus(), handler);
+	}
+
+	/**
+	 * Sets the handler of a message context
+	 * 
+	 * @param command   The command classifier
+	 * @param qualifier The command qualifier
+	 * @param status    The status code
+	 * @param handler   The handler, set to null to remove
+	 */
+	public void setHandler(byte command, byte qualifier, byte status, Receiver handler) {
+		set(command & 0xff, qualifier & 0xff, status & 0xff, handler);
+	}
+
+	/**
+	 * Sets the handler of a command and a qualifier with any status
+	 * 
+	 * @param command   The command classifier
+	 * @param qualifier The command qualifier
+	 * @param handler   The handler, set to null to remove
+	 */
+	public void setHandler(byte command, byte qualifier, Receiver handler) {
+		set(command & 0xff, qualifier & 0xff, ANY_STATUS, handler);
+	}
+
+	/**
+	 * Sets the handler of the messages without a registered handler
+	 * 
+	 * @param handler The default handler, set to null to drop those messages
+	 */
+	public void setDefaultHandler(Receiver handler) {
+		defaultHandler = handler;
+	}
+
+	/**
+	 * Returns the handler which would receive the messages with the given key
+	 * 
+	 * @param key The key, see {@link #key(byte, byte, byte)}
+	 * @return The handler, null if none
+	 */
+	public Receiver getHandler(int key) {
+		Receiver[][] command = table[(key >>> 16) & 0xff];
+		if (command != null) {
+			Receiver[] qualifier = command[(key >>> 8) & 0xff];
+			if (qualifier != null) {
+				Receiver handler = qualifier[key & 0xff];
+				return (handler != null) ? handler : qualifier[ANY_STATUS];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void receive(Message message) {
+		Receiver handler = getHandler(key(message));
+		if (handler == null) {
+			handler = defaultHandler;
+		}
+
+		if (handler != null) {
+			handler.receive(message);
+		}
+	}
+
+	/**
+	 * Copies the path to the updated slot and publishes the new table
+	 */
+	private synchronized void set(int command, int qualifier, int status, Receiver handler) {
+		Receiver[][][] t = table.clone();
+		Receiver[][] c = (t[command] != null) ? t[command].clone() : new Receiver[256][];
+		Receiver[] q = (c[qualifier] != null) ? c[qualifier].clone() : new Receiver[ANY_STATUS + 1];
+		q[status] = handler;
+		c[qualifier] = q;
+		t[command] = c;
+		table = t;
+	}
+}
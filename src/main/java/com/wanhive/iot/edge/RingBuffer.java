@@ -0,0 +1,413 @@
+/*
+ * RingBuffer.java
+ *
+ * Bounded lock-free queue for the IO engine
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free ring buffer (D. Vyukov's bounded queue). Every slot carries
+ * a sequence number which tells the producers and the consumers whose turn it
+ * is, so that {@link #offer(Object)} and {@link #poll()} only contend on a
+ * single compare-and-set of the tail or the head. The head and the tail are
+ * padded to separate cache lines. Any number of producers and consumers are
+ * supported, the queue is fastest with many producers and a single consumer
+ * (the outgoing queue of an {@link Executor}).
+ * 
+ * The blocking operations fall back to a lock and conditions only when the
+ * buffer is full or empty; the non-blocking operations never lock unless a
+ * thread is waiting. The capacity is rounded up to a power of two, and to at
+ * least two slots: with a single slot the sequence of a published element and
+ * the sequence of a free slot would be the same.
+ * 
+ * The {@link BlockingQueue} contract is only partly supported: the elements
+ * are removed from the head only. The iterator returns a weakly consistent,
+ * read-only snapshot, and {@link #remove(Object)} (along with
+ * {@link #removeAll(Collection)}, {@link #retainAll(Collection)} and
+ * {@link #removeIf(java.util.function.Predicate)}) throws
+ * UnsupportedOperationException.
+ * 
+ * @author amit
+ *
+ * @param <E> The type of the elements
+ */
+public class RingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private static final String BAD_CAPACITY = "Invalid capacity";
+	private static final int MAX_CAPACITY = 1 << 30;
+	private final Object[] elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	/**
+	 * The next position to read
+	 */
+	private final Sequence head = new Sequence();
+	/**
+	 * The next position to write
+	 */
+	private final Sequence tail = new Sequence();
+	/**
+	 * Guards the conditions of the blocking operations
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	/**
+	 * Number of threads waiting on each condition
+	 */
+	private final AtomicInteger consumers = new AtomicInteger();
+	private final AtomicInteger producers = new AtomicInteger();
+
+	/**
+	 * Keeps the value off the cache lines of its neighbors
+	 */
+	static class LeftPadding {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	static class Value extends LeftPadding {
+		volatile long value;
+	}
+
+	static final class Sequence extends Value {
+		private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater.newUpdater(Value.class,
+				"value");
+		long p9, p10, p11, p12, p13, p14, p15;
+
+		long get() {
+			return value;
+		}
+
+		boolean compareAndSet(long expect, long update) {
+			return UPDATER.compareAndSet(this, expect, update);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity The minimum capacity [1, 2^30], a capacity of one is
+	 *                 rounded up to two
+	 */
+	public RingBuffer(int capacity) {
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException(BAD_CAPACITY);
+		}
+
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		elements = new Object[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; ++i) {
+			sequences.lazySet(i, i);
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns the capacity
+	 * 
+	 * @return The maximum number of elements in the buffer
+	 */
+	public int capacity() {
+		return elements.length;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		long pos = tail.get();
+		while (true) {
+			int i = (int) pos & mask;
+			long diff = sequences.get(i) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					elements[i] = e;
+					// Publishes the element (volatile, orders the check below)
+					sequences.set(i, pos + 1);
+					if (consumers.get() > 0) {
+						signal(notEmpty);
+					}
+					return true;
+				}
+				pos = tail.get();
+			} else if (diff < 0) {
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	@Override
+	public E poll() {
+		long pos = head.get();
+		while (true) {
+			int i = (int) pos & mask;
+			long diff = sequences.get(i) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					@SuppressWarnings("unchecked")
+					E e = (E) elements[i];
+					elements[i] = null;
+					// Hands the slot over to the next round of producers
+					sequences.set(i, pos + elements.length);
+					if (producers.get() > 0) {
+						signal(notFull);
+					}
+					return e;
+				}
+				pos = head.get();
+			} else if (diff < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+	}
+
+	@Override
+	public E peek() {
+		while (true) {
+			long pos = head.get();
+			int i = (int) pos & mask;
+			if (sequences.get(i) != pos + 1) {
+				if (pos == head.get()) {
+					return null;
+				}
+				continue;
+			}
+
+			@SuppressWarnings("unchecked")
+			E e = (E) elements[i];
+			if (pos == head.get() && e != null) {
+				return e;
+			}
+		}
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		if (offer(e)) {
+			return;
+		}
+
+		lock.lockInterruptibly();
+		try {
+			producers.incrementAndGet();
+			try {
+				while (!offer(e)) {
+					notFull.await();
+				}
+			} catch (InterruptedException ie) {
+				notFull.signal();
+				throw ie;
+			} finally {
+				producers.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(e)) {
+			return true;
+		}
+
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			producers.incrementAndGet();
+			try {
+				while (!offer(e)) {
+					if (nanos <= 0) {
+						return false;
+					}
+					nanos = notFull.awaitNanos(nanos);
+				}
+				return true;
+			} catch (InterruptedException ie) {
+				notFull.signal();
+				throw ie;
+			} finally {
+				producers.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+
+		lock.lockInterruptibly();
+		try {
+			consumers.incrementAndGet();
+			try {
+				while ((e = poll()) == null) {
+					notEmpty.await();
+				}
+				return e;
+			} catch (InterruptedException ie) {
+				notEmpty.signal();
+				throw ie;
+			} finally {
+				consumers.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			consumers.incrementAndGet();
+			try {
+				while ((e = poll()) == null) {
+					if (nanos <= 0) {
+						return null;
+					}
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+				return e;
+			} catch (InterruptedException ie) {
+				notEmpty.signal();
+				throw ie;
+			} finally {
+				consumers.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Not supported, the elements are removed from the head only
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return elements.length - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		} else if (c == this) {
+			throw new IllegalArgumentException();
+		}
+
+		int count = 0;
+		E e;
+		while (count < maxElements && (e = poll()) != null) {
+			c.add(e);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public int size() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (h == head.get()) {
+				return (int) Math.max(0, Math.min(elements.length, t - h));
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<E>();
+		long t = tail.get();
+		for (long pos = head.get(); pos < t; ++pos) {
+			int i = (int) pos & mask;
+			@SuppressWarnings("unchecked")
+			E e = (E) elements[i];
+			if (e != null && sequences.get(i) == pos + 1) {
+				snapshot.add(e);
+			}
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	/**
+	 * Wakes up a thread waiting on the given condition
+	 */
+	private void signal(Condition condition) {
+		lock.lock();
+		try {
+			condition.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
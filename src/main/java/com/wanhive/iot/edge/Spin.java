@@ -0,0 +1,63 @@
+/*
+ * Spin.java
+ *
+ * Spin-wait hint for the waiting policies
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Calls Thread.onSpinWait where the runtime provides it (Java 9 and later)
+ * 
+ * @author amit
+ *
+ */
+final class Spin {
+	private static final MethodHandle ON_SPIN_WAIT = lookup();
+
+	private Spin() {
+
+	}
+
+	/**
+	 * Tells the processor that the calling thread is spinning
+	 */
+	static void hint() {
+		if (ON_SPIN_WAIT != null) {
+			try {
+				ON_SPIN_WAIT.invokeExact();
+			} catch (Throwable e) {
+
+			}
+		}
+	}
+
+	private static MethodHandle lookup() {
+		try {
+			return MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
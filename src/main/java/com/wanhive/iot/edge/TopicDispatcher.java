@@ -0,0 +1,193 @@
+/*
+ * TopicDispatcher.java
+ *
+ * Dispatches the incoming messages to per-topic handlers
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import com.wanhive.iot.protocol.Message;
+import com.wanhive.iot.protocol.Protocol;
+import com.wanhive.iot.protocol.RequestContext;
+
+/**
+ * Receiver which takes the message handling off the reader thread. The
+ * publications are dispatched through a 256-entry table indexed by their topic
+ * (the session byte), all the other messages go to the default handler. The
+ * handlers run on a fixed set of worker threads: every topic is bound to one
+ * worker, so the messages of a topic are handled one at a time in the order of
+ * their arrival while different topics are handled in parallel.
+ * 
+ * When a worker's queue is full, {@link #receive(Message)} blocks, and the
+ * slow handler pushes back on the connection instead of growing the heap.
+ * 
+ * @author amit
+ *
+ */
+public class TopicDispatcher implements Receiver, AutoCloseable {
+	private static final String BAD_REQUEST = "Not allowed";
+	private static final int TOPICS = 256;
+	private static final byte PUBLISH_COMMAND = RequestContext.PUBLISH.getCommand();
+	private static final byte PUBLISH_QUALIFIER = RequestContext.PUBLISH.getQualifier();
+	private final AtomicReferenceArray<Receiver> handlers = new AtomicReferenceArray<Receiver>(TOPICS);
+	private volatile Receiver defaultHandler;
+	private final BlockingQueue<Message>[] queues;
+	private Thread[] workers;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param workers  The number of worker threads
+	 * @param capacity The capacity of each worker's queue
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TopicDispatcher(int workers, int capacity) {
+		if (workers < 1 || workers > TOPICS) {
+			throw new IllegalArgumentException(BAD_REQUEST);
+		}
+
+		queues = new BlockingQueue[workers];
+		for (int i = 0; i < workers; ++i) {
+			queues[i] = new RingBuffer<Message>(capacity);
+		}
+	}
+
+	/**
+	 * Sets the handler of a topic
+	 * 
+	 * @param topic   The topic
+	 * @param handler The handler of the topic's publications, set to null to use
+	 *                the default handler
+	 */
+	public void setHandler(byte topic, Receiver handler) {
+		handlers.set(topic & 0xff, handler);
+	}
+
+	/**
+	 * Sets the handler of the messages which are not publications and of the
+	 * topics without a handler
+	 * 
+	 * @param handler The default handler, set to null to drop those messages
+	 */
+	public void setDefaultHandler(Receiver handler) {
+		defaultHandler = handler;
+	}
+
+	/**
+	 * Starts the worker threads. Fails if they are already running.
+	 */
+	public synchronized void start() {
+		if (workers != null) {
+			throw new IllegalStateException(BAD_REQUEST);
+		}
+
+		workers = new Thread[queues.length];
+		for (int i = 0; i < queues.length; ++i) {
+			final BlockingQueue<Message> queue = queues[i];
+			workers[i] = new Thread(() -> {
+				try {
+					while (true) {
+						dispatch(queue.take());
+					}
+				} catch (InterruptedException e) {
+
+				}
+			}, "TopicDispatcher-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Checks the worker threads' state
+	 * 
+	 * @return true if the workers are running, false otherwise
+	 */
+	public synchronized boolean isRunning() {
+		return workers != null;
+	}
+
+	/**
+	 * Queues a message for the worker of its topic. Blocks while the worker's
+	 * queue is full. If the calling thread is interrupted while blocked (the
+	 * Executor is stopping), the message is dropped and the thread's interrupt
+	 * status is set again.
+	 */
+	@Override
+	public void receive(Message message) {
+		try {
+			queues[(message.getSession() & 0xff) % queues.length].put(message);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the worker threads and discards the pending messages
+	 */
+	@Override
+	public synchronized void close() {
+		if (workers != null) {
+			try {
+				for (Thread worker : workers) {
+					worker.interrupt();
+				}
+				for (Thread worker : workers) {
+					worker.join();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				workers = null;
+			}
+		}
+
+		for (BlockingQueue<Message> queue : queues) {
+			queue.clear();
+		}
+	}
+
+	/**
+	 * Runs the handler of a message on the calling worker thread
+	 */
+	private void dispatch(Message message) {
+		Receiver handler = null;
+		if (Protocol.checkContext(message, PUBLISH_COMMAND, PUBLISH_QUALIFIER)) {
+			handler = handlers.get(message.getSession() & 0xff);
+		}
+
+		if (handler == null) {
+			handler = defaultHandler;
+		}
+
+		try {
+			if (handler != null) {
+				handler.receive(message);
+			}
+		} catch (RuntimeException e) {
+			// Keep the worker alive
+			Logger.getGlobal().warning(e.getMessage());
+		}
+	}
+}
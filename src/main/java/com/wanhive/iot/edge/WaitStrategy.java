@@ -0,0 +1,175 @@
+/*
+ * WaitStrategy.java
+ *
+ * Waiting policies for the IO engine's queues
+ *
+ * This program is part of Wanhive IoT Platform.
+ *
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.wanhive.iot.edge;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how a consumer waits for a message on an empty queue. The strategies
+ * trade CPU time for latency: {@link #BLOCKING} parks the thread inside the
+ * queue and costs a park/unpark pair per wakeup, {@link Sleeping} polls and
+ * naps, {@link Yielding} polls and yields the processor and {@link BusySpin}
+ * never gives up its core. The spinning strategies are only useful if a
+ * processor can be dedicated to the waiting thread.
+ * 
+ * All the strategies respond to interruption.
+ * 
+ * @author amit
+ *
+ */
+public interface WaitStrategy {
+	/**
+	 * Waits in {@link BlockingQueue#take()}
+	 */
+	WaitStrategy BLOCKING = new Blocking();
+	/**
+	 * Spins, then yields, then naps for {@link Sleeping#DEFAULT_SLEEP}
+	 * nanoseconds
+	 */
+	WaitStrategy SLEEPING = new Sleeping(Sleeping.DEFAULT_SLEEP);
+	/**
+	 * Spins, then yields
+	 */
+	WaitStrategy YIELDING = new Yielding();
+	/**
+	 * Spins with an exponential backoff between the polls
+	 */
+	WaitStrategy BUSY_SPIN = new BusySpin();
+
+	/**
+	 * Removes a message from the queue, waiting if necessary until one becomes
+	 * available
+	 * 
+	 * @param <E>   The type of the elements
+	 * @param queue The queue to take from
+	 * @return The head of the queue
+	 * @throws InterruptedException
+	 */
+	<E> E take(BlockingQueue<E> queue) throws InterruptedException;
+
+	/**
+	 * Parks the thread inside the queue
+	 */
+	final class Blocking implements WaitStrategy {
+		@Override
+		public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+			return queue.take();
+		}
+	}
+
+	/**
+	 * Polls the queue, spinning and yielding for a while before napping between
+	 * the polls. Keeps the CPU usage low when idle at the cost of up to one nap
+	 * of latency.
+	 */
+	final class Sleeping implements WaitStrategy {
+		/**
+		 * The default nap in nanoseconds
+		 */
+		public static final long DEFAULT_SLEEP = 50000;
+		private static final int SPINS = 100;
+		private static final int YIELDS = 100;
+		private final long sleep;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param sleep The nap between two polls in nanoseconds
+		 */
+		public Sleeping(long sleep) {
+			if (sleep <= 0) {
+				throw new IllegalArgumentException("Invalid duration");
+			}
+			this.sleep = sleep;
+		}
+
+		@Override
+		public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+			for (int i = 0;; ++i) {
+				E e = queue.poll();
+				if (e != null) {
+					return e;
+				} else if (Thread.interrupted()) {
+					throw new InterruptedException();
+				} else if (i < SPINS) {
+					Spin.hint();
+				} else if (i < SPINS + YIELDS) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(sleep);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Polls the queue, spinning for a while before yielding the processor between
+	 * the polls
+	 */
+	final class Yielding implements WaitStrategy {
+		private static final int SPINS = 100;
+
+		@Override
+		public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+			for (int i = 0;; ++i) {
+				E e = queue.poll();
+				if (e != null) {
+					return e;
+				} else if (Thread.interrupted()) {
+					throw new InterruptedException();
+				} else if (i < SPINS) {
+					Spin.hint();
+				} else {
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Polls the queue without ever giving up the processor. The pause between two
+	 * polls doubles up to a limit, so that an idle consumer does not hammer the
+	 * cache line which the producers write to.
+	 */
+	final class BusySpin implements WaitStrategy {
+		private static final int MAX_BACKOFF = 64;
+
+		@Override
+		public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+			for (int backoff = 1;; backoff = Math.min(backoff << 1, MAX_BACKOFF)) {
+				E e = queue.poll();
+				if (e != null) {
+					return e;
+				} else if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+				for (int i = 0; i < backoff; ++i) {
+					Spin.hint();
+				}
+			}
+		}
+	}
+}
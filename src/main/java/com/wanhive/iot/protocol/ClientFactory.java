@@ -23,13 +23,40 @@
  */
 package com.wanhive.iot.protocol;
 
+import java.io.IOException;
+import java.net.ConnectException;
 import java.net.ProtocolException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
 
 import com.nimbusds.srp6.BigIntegerUtils;
+import com.wanhive.iot.protocol.agreement.WHEphemeralKeyPool;
 import com.wanhive.iot.protocol.agreement.WHSRP6ClientSession;
+import com.wanhive.iot.protocol.agreement.WHSRP6Group;
+import com.wanhive.iot.protocol.bean.HostAddress;
 import com.wanhive.iot.protocol.bean.IdentificationResponse;
 import com.wanhive.iot.protocol.bean.Identity;
+import com.wanhive.iot.protocol.bean.NameInfo;
 import com.wanhive.iot.protocol.hosts.Hosts;
+import com.wanhive.iot.protocol.hosts.HubHealth;
+import com.wanhive.iot.protocol.hosts.HubRing;
+import com.wanhive.iot.protocol.hosts.HubSelector;
 
 /**
  * Creates a Wanhive client
@@ -40,6 +67,26 @@ import com.wanhive.iot.protocol.hosts.Hosts;
 public class ClientFactory {
 	private static final String AUTHENTICATION_FAIL = "Authentication failed";
 	private static final String BOOTSTRAP_FAIL = "Bootstrapping failed";
+	private static final String BAD_PARALLELISM = "Invalid parallelism";
+	private static final String DUPLICATE_IDENTITY = "Duplicate identity";
+	private static final String CIRCUIT_OPEN = "Circuit open";
+	private static final String NOT_FOUND = "Not found";
+	/**
+	 * The maximum number of outstanding FINDROOT requests on a connection
+	 */
+	public static final int FINDROOT_WINDOW = 64;
+	/**
+	 * The maximum number of cached addresses per hosts database
+	 */
+	private static final int MAX_ADDRESSES = 1024;
+	private static volatile WHEphemeralKeyPool keyPool;
+	private static volatile HubSelector hubSelector;
+	private static volatile HubHealth hubHealth;
+	private static volatile HubRing hubRing;
+	/**
+	 * The recently used addresses of each hosts database
+	 */
+	private static final Map<Hosts, Map<Long, HostAddress>> addresses = new WeakHashMap<Hosts, Map<Long, HostAddress>>();
 
 	/**
 	 * Configures the trust store
@@ -53,6 +100,52 @@ public class ClientFactory {
 		System.setProperty("javax.net.ssl.trustStorePassword", password);
 	}
 
+	/**
+	 * Sets the pool of pre-generated ephemeral key pairs used during
+	 * authentication. The pool is not started or closed by the factory.
+	 * 
+	 * @param pool The key pool, set to null to generate the key pairs inline
+	 */
+	public static void setKeyPool(WHEphemeralKeyPool pool) {
+		keyPool = pool;
+	}
+
+	/**
+	 * Sets the hub selector which orders the authentication and bootstrap nodes
+	 * before the connection attempts. The outcome of every connection with a
+	 * stable node is reported to the selector.
+	 * 
+	 * @param selector The hub selector, set to null to try the nodes in the given
+	 *                 order
+	 */
+	public static void setHubSelector(HubSelector selector) {
+		hubSelector = selector;
+	}
+
+	/**
+	 * Sets the shared health state of the stable nodes. The nodes whose circuit
+	 * is open are skipped, and only one connection attempt probes a node whose
+	 * backoff period has expired.
+	 * 
+	 * @param health The hub health state, set to null to try every node
+	 */
+	public static void setHubHealth(HubHealth health) {
+		hubHealth = health;
+	}
+
+	/**
+	 * Sets the local model of the overlay network. During bootstrapping the
+	 * client then connects straight to the predicted root hub and confirms the
+	 * prediction with a FINDROOT request pipelined with the session key request.
+	 * On a mismatch the client moves on to the actual root hub.
+	 * 
+	 * @param ring The hub ring, set to null to search for the root hub through
+	 *             the bootstrap nodes
+	 */
+	public static void setHubRing(HubRing ring) {
+		hubRing = ring;
+	}
+
 	/**
 	 * Connects with the Wanhive network
 	 * 
@@ -72,6 +165,328 @@ public class ClientFactory {
 		}
 	}
 
+	/**
+	 * Connects a fleet of identities with the Wanhive network. The root hubs of
+	 * all the identities are resolved in one batch (see {@link #findRoots}), then
+	 * the identities are authenticated and registered concurrently on a fork-join
+	 * pool, one root hub after another.
+	 * 
+	 * Only the root hub resolution shares a connection. Every identity opens its
+	 * own authentication connection, because the authentication node binds the
+	 * authenticated session to the connection and signs the registration of that
+	 * identity only. To cut the CPU cost of the logins, precompute the SRP-6a
+	 * group (see {@link WHSRP6Group#precompute(int)}) and set a key pool (see
+	 * {@link #setKeyPool(WHEphemeralKeyPool)}) beforehand.
+	 * 
+	 * @param identities  Identities of the clients
+	 * @param hosts       Hosts database for the network address resolution
+	 * @param authNodes   List of the stable authentication node IDs
+	 * @param bootNodes   List of the stable bootstrap node IDs
+	 * @param timeout     Socket read timeout in milliseconds (during handshaking)
+	 * @param secure      If true then SSL/TLS connections will be established
+	 * @param parallelism The maximum number of identities processed at once
+	 * @return Map of the identifiers to the connected clients in the iteration
+	 *         order of the given identities, identities which could not connect
+	 *         are absent.
+	 * @throws InterruptedException
+	 * @throws IllegalArgumentException if two identities have the same identifier
+	 */
+	public static Map<Long, Client> createClients(Collection<Identity> identities, Hosts hosts, long[] authNodes,
+			long[] bootNodes, int timeout, boolean secure, int parallelism) throws InterruptedException {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException(BAD_PARALLELISM);
+		}
+
+		Set<Long> uids = new HashSet<Long>();
+		for (Identity identity : identities) {
+			if (!uids.add(identity.getUid())) {
+				// The map of the results would lose a connected client
+				throw new IllegalArgumentException(DUPLICATE_IDENTITY);
+			}
+		}
+
+		Map<Long, List<Identity>> roots = findRoots(identities, hosts, bootNodes, timeout, secure);
+		Map<Long, Client> clients = new LinkedHashMap<Long, Client>();
+		// Every connected client, so that none is lost if the caller gives up
+		List<Client> created = new ArrayList<Client>();
+		AtomicBoolean abandoned = new AtomicBoolean();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			Map<Identity, ForkJoinTask<Client>> tasks = new IdentityHashMap<Identity, ForkJoinTask<Client>>();
+			for (Map.Entry<Long, List<Identity>> entry : roots.entrySet()) {
+				long root = entry.getKey();
+				for (Identity identity : entry.getValue()) {
+					tasks.put(identity, pool.submit(() -> {
+						try (WanhiveClient auth = authenticate(identity, hosts, authNodes, timeout, secure)) {
+							try {
+								return track(register(identity, hosts, auth, root, timeout, secure), created,
+										abandoned);
+							} catch (ProtocolException e) {
+								// The overlay has probably changed, search again
+								return track(bootstrap(identity, hosts, auth, bootNodes, timeout, secure), created,
+										abandoned);
+							}
+						} catch (ProtocolException e) {
+							Logger.getGlobal().warning(identity.getUid() + ": " + e.getMessage());
+							return null;
+						}
+					}));
+				}
+			}
+
+			for (Identity identity : identities) {
+				if (!tasks.containsKey(identity)) {
+					// Root hub is unknown, take the regular path
+					tasks.put(identity, pool.submit(() -> {
+						try {
+							return track(createClient(identity, hosts, authNodes, bootNodes, timeout, secure), created,
+									abandoned);
+						} catch (ProtocolException e) {
+							Logger.getGlobal().warning(identity.getUid() + ": " + e.getMessage());
+							return null;
+						}
+					}));
+				}
+			}
+
+			for (Identity identity : identities) {
+				try {
+					Client client = tasks.get(identity).get();
+					if (client != null) {
+						clients.put(identity.getUid(), client);
+					}
+				} catch (ExecutionException e) {
+					Logger.getGlobal().warning(identity.getUid() + ": " + e.getCause());
+				}
+			}
+			return clients;
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			synchronized (created) {
+				// The tasks still running close their clients from now on
+				abandoned.set(true);
+				for (Client client : created) {
+					close(client);
+				}
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Resolves the root hubs of many identities over a single bootstrap
+	 * connection. The FINDROOT requests are pipelined (at most
+	 * {@value #FINDROOT_WINDOW} outstanding requests) and the responses are
+	 * matched to the requests by their sequence numbers. If a bootstrap node fails,
+	 * the unresolved identities are retried on the next node.
+	 * 
+	 * @param identities Identities of the clients
+	 * @param hosts      Hosts database for the network address resolution
+	 * @param nodes      List of the stable bootstrap node IDs
+	 * @param timeout    Socket read timeout in milliseconds
+	 * @param secure     If true then SSL/TLS connection will be established
+	 * @return Map of the root hub identifiers to the identities they serve,
+	 *         identities which could not be resolved are absent.
+	 */
+	public static Map<Long, List<Identity>> findRoots(Collection<Identity> identities, Hosts hosts, long[] nodes,
+			int timeout, boolean secure) {
+		Map<Long, List<Identity>> roots = new LinkedHashMap<Long, List<Identity>>();
+		Deque<Identity> remaining = new ArrayDeque<Identity>(identities);
+		Map<Short, Identity> pending = new HashMap<Short, Identity>();
+		Protocol protocol = new Protocol();
+
+		long[] candidates = order(nodes);
+		HostAddress[] resolved = lookup(hosts, candidates);
+		for (int i = 0; i < candidates.length; ++i) {
+			if (remaining.isEmpty()) {
+				break;
+			}
+			try (WanhiveClient client = connect(resolved[i], candidates[i], timeout, secure)) {
+				while (!remaining.isEmpty() || !pending.isEmpty()) {
+					while (pending.size() < FINDROOT_WINDOW && !remaining.isEmpty()) {
+						Message message = protocol.createFindRootRequest(remaining.peek().getUid());
+						client.send(message);
+						pending.put(message.getSequenceNumber(), remaining.poll());
+					}
+
+					Message message = client.receive();
+					Identity identity = pending.remove(message.getSequenceNumber());
+					if (identity == null) {
+						continue;
+					}
+
+					try {
+						long root = protocol.processFindRootResponse(message);
+						List<Identity> list = roots.get(root);
+						if (list == null) {
+							list = new ArrayList<Identity>();
+							roots.put(root, list);
+						}
+						list.add(identity);
+					} catch (ProtocolException e) {
+						// Request denied, leave unresolved
+					}
+				}
+			} catch (Exception e) {
+				// Retry the outstanding requests on the next node
+				for (Identity identity : pending.values()) {
+					remaining.addFirst(identity);
+				}
+				pending.clear();
+			}
+		}
+
+		return roots;
+	}
+
+	/**
+	 * Resolves a host's network address, the Hosts implementations are not
+	 * required to be thread safe. The parsed address (and its resolved socket
+	 * address) is reused while the hosts database returns the same record.
+	 */
+	private static HostAddress lookup(Hosts hosts, long identity) {
+		NameInfo ni;
+		try {
+			synchronized (hosts) {
+				ni = hosts.get(identity);
+			}
+		} catch (NoSuchElementException e) {
+			address(hosts, identity, null);
+			throw e;
+		}
+
+		return address(hosts, identity, ni);
+	}
+
+	/**
+	 * Resolves the network addresses of many hosts with a single lookup, the
+	 * elements corresponding to the unresolved hosts are null
+	 */
+	private static HostAddress[] lookup(Hosts hosts, long[] identities) {
+		HostAddress[] result = new HostAddress[identities.length];
+		NameInfo[] names;
+		try {
+			synchronized (hosts) {
+				names = hosts.getAll(identities);
+			}
+		} catch (RuntimeException e) {
+			return result;
+		}
+
+		for (int i = 0; i < identities.length; ++i) {
+			result[i] = address(hosts, identities[i], names[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cached address of a host if it still matches the record in the
+	 * hosts database. A changed record replaces the address, a missing record
+	 * (null) drops it.
+	 */
+	private static HostAddress address(Hosts hosts, long identity, NameInfo ni) {
+		Map<Long, HostAddress> cache;
+		synchronized (addresses) {
+			cache = addresses.get(hosts);
+			if (cache == null) {
+				cache = new LinkedHashMap<Long, HostAddress>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<Long, HostAddress> eldest) {
+						return size() > MAX_ADDRESSES;
+					}
+				};
+				addresses.put(hosts, cache);
+			}
+		}
+
+		synchronized (cache) {
+			if (ni == null) {
+				cache.remove(identity);
+				return null;
+			}
+
+			HostAddress address = cache.get(identity);
+			if (address == null || !address.matches(ni)) {
+				address = HostAddress.of(ni);
+				cache.put(identity, address);
+			}
+			return address;
+		}
+	}
+
+	/**
+	 * Connects with a stable node and reports the outcome to the hub selector and
+	 * the hub health state
+	 */
+	private static WanhiveClient connect(HostAddress address, long node, int timeout, boolean secure)
+			throws IOException {
+		if (address == null) {
+			throw new NoSuchElementException(NOT_FOUND);
+		}
+
+		HubSelector selector = hubSelector;
+		HubHealth health = hubHealth;
+		if (health != null && !health.tryAcquire(node)) {
+			throw new ConnectException(CIRCUIT_OPEN);
+		}
+
+		long start = System.nanoTime();
+		try {
+			WanhiveClient client = new WanhiveClient(address, timeout, secure);
+			if (selector != null) {
+				selector.recordSuccess(node, System.nanoTime() - start);
+			}
+			if (health != null) {
+				health.recordSuccess(node);
+			}
+			return client;
+		} catch (IOException e) {
+			if (selector != null) {
+				selector.recordFailure(node);
+			}
+			if (health != null) {
+				health.recordFailure(node);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the nodes in the order preferred by the hub selector
+	 */
+	private static long[] order(long[] nodes) {
+		HubSelector selector = hubSelector;
+		return (selector != null) ? selector.order(nodes) : nodes;
+	}
+
+	/**
+	 * Hands a new client over to the caller, closes it if the caller has given up
+	 */
+	private static Client track(Client client, List<Client> created, AtomicBoolean abandoned) {
+		if (client != null) {
+			synchronized (created) {
+				if (abandoned.get()) {
+					close(client);
+					return null;
+				}
+				created.add(client);
+			}
+		}
+		return client;
+	}
+
+	private static void close(Client client) {
+		try {
+			client.close();
+		} catch (Exception e) {
+
+		}
+	}
+
 	private static WanhiveClient authenticate(Identity identity, Hosts hosts, long[] nodes, int timeout, boolean secure)
 			throws ProtocolException {
 		if (identity.getPassword() == null || identity.getPassword().length == 0) {
@@ -80,17 +495,20 @@ public class ClientFactory {
 
 		Protocol protocol = new Protocol();
 		boolean connected = false;
-		for (long node : nodes) {
+		long[] candidates = order(nodes);
+		HostAddress[] resolved = lookup(hosts, candidates);
+		for (int i = 0; i < candidates.length; ++i) {
 			if (connected) { // Something bad happened
 				break;
 			}
-			try (WanhiveClient auth = new WanhiveClient(hosts.get(node), timeout, secure)) {
+			try (WanhiveClient auth = connect(resolved[i], candidates[i], timeout, secure)) {
 				connected = true;
 				// -----------------------------------------------------------------
 				/*
 				 * Identification
 				 */
 				WHSRP6ClientSession session = WHSRP6ClientSession.getDefaultSession(identity.getRounds());
+				session.setKeyPool(keyPool);
 				session.step1(WHSRP6ClientSession.getDefaultConfig(), Long.toString(identity.getUid()),
 						identity.getPassword());
 				Message message = protocol.createIdentificationRequest(identity.getUid(),
@@ -119,14 +537,26 @@ public class ClientFactory {
 
 	private static WanhiveClient bootstrap(Identity identity, Hosts hosts, Client authenticator, long[] nodes,
 			int timeout, boolean secure) throws ProtocolException {
+		HubRing ring = hubRing;
+		if (ring != null) {
+			try {
+				return bootstrap(identity, hosts, authenticator, ring, timeout, secure);
+			} catch (Exception e) {
+				// Take the regular path
+			}
+		}
+
 		Protocol protocol = new Protocol();
 		boolean connected = false;
 
-		for (long node : nodes) {
+		long[] candidates = order(nodes);
+		HostAddress[] resolved = lookup(hosts, candidates);
+		for (int i = 0; i < candidates.length; ++i) {
+			long node = candidates[i];
 			if (connected) { // Something bad happened
 				break;
 			}
-			try (WanhiveClient client = new WanhiveClient(hosts.get(node), timeout, secure)) {
+			try (WanhiveClient client = connect(resolved[i], node, timeout, secure)) {
 				connected = true;
 				// -----------------------------------------------------------------
 				/*
@@ -136,29 +566,10 @@ public class ClientFactory {
 				message = client.execute(message);
 				long root = protocol.processFindRootResponse(message);
 				if (root != node) {
-					client.connect(hosts.get(root), timeout, secure);
-				}
-				// -----------------------------------------------------------------
-				/*
-				 * Establish a unique session with the host
-				 */
-				message = protocol.createGetKeyRequest(null);
-				message = client.execute(message);
-				byte[] hc = protocol.processGetKeyResponse(message);
-				// -----------------------------------------------------------------
-				/*
-				 * Get the registration request signed by the authentication node
-				 */
-				message = protocol.createRegisterRequest(identity.getUid(), hc);
-				if (authenticator != null) {
-					message = authenticator.execute(message);
+					client.connect(lookup(hosts, root), timeout, secure);
 				}
-				/*
-				 * Complete the registration
-				 */
-				message = client.execute(message);
-				protocol.processRegisterResponse(message);
 				// -----------------------------------------------------------------
+				register(protocol, identity, authenticator, client);
 				client.setTimeout(0);
 				return new WanhiveClient(client.release());
 			} catch (Exception e) {
@@ -168,4 +579,86 @@ public class ClientFactory {
 
 		throw new ProtocolException(BOOTSTRAP_FAIL);
 	}
+
+	/**
+	 * Connects with the predicted root hub. The FINDROOT and GETKEY requests are
+	 * sent together, so that a correct prediction costs a single round trip.
+	 */
+	private static WanhiveClient bootstrap(Identity identity, Hosts hosts, Client authenticator, HubRing ring,
+			int timeout, boolean secure) throws Exception {
+		Protocol protocol = new Protocol();
+		long hub = ring.predict(identity.getUid());
+		try (WanhiveClient client = new WanhiveClient(lookup(hosts, hub), timeout, secure)) {
+			Message findRoot = protocol.createFindRootRequest(identity.getUid());
+			Message getKey = protocol.createGetKeyRequest(null);
+			client.send(findRoot);
+			client.send(getKey);
+
+			Message rootResponse = null;
+			Message keyResponse = null;
+			while (rootResponse == null || keyResponse == null) {
+				Message message = client.receive();
+				if (message.getSequenceNumber() == findRoot.getSequenceNumber()) {
+					rootResponse = message;
+				} else if (message.getSequenceNumber() == getKey.getSequenceNumber()) {
+					keyResponse = message;
+				}
+			}
+
+			long root = protocol.processFindRootResponse(rootResponse);
+			ring.record(root == hub);
+			if (root == hub) {
+				register(protocol, identity, authenticator, client, protocol.processGetKeyResponse(keyResponse));
+			} else {
+				// Correct the course
+				client.connect(lookup(hosts, root), timeout, secure);
+				register(protocol, identity, authenticator, client);
+			}
+			client.setTimeout(0);
+			return new WanhiveClient(client.release());
+		}
+	}
+
+	private static WanhiveClient register(Identity identity, Hosts hosts, Client authenticator, long root,
+			int timeout, boolean secure) throws ProtocolException {
+		try (WanhiveClient client = new WanhiveClient(lookup(hosts, root), timeout, secure)) {
+			register(new Protocol(), identity, authenticator, client);
+			client.setTimeout(0);
+			return new WanhiveClient(client.release());
+		} catch (Exception e) {
+			throw new ProtocolException(BOOTSTRAP_FAIL);
+		}
+	}
+
+	/**
+	 * Registers the identity with the root host the client is connected to
+	 */
+	private static void register(Protocol protocol, Identity identity, Client authenticator, Client client)
+			throws Exception {
+		/*
+		 * Establish a unique session with the host
+		 */
+		Message message = protocol.createGetKeyRequest(null);
+		message = client.execute(message);
+		register(protocol, identity, authenticator, client, protocol.processGetKeyResponse(message));
+	}
+
+	/**
+	 * Registers the identity using the session key issued by the root host
+	 */
+	private static void register(Protocol protocol, Identity identity, Client authenticator, Client client, byte[] hc)
+			throws Exception {
+		/*
+		 * Get the registration request signed by the authentication node
+		 */
+		Message message = protocol.createRegisterRequest(identity.getUid(), hc);
+		if (authenticator != null) {
+			message = authenticator.execute(message);
+		}
+		/*
+		 * Complete the registration
+		 */
+		message = client.execute(message);
+		protocol.processRegisterResponse(message);
+	}
 }
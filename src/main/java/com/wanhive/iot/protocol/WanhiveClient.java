@@ -34,6 +34,7 @@ import java.net.SocketException;
 
 import javax.net.ssl.SSLSocketFactory;
 
+import com.wanhive.iot.protocol.bean.HostAddress;
 import com.wanhive.iot.protocol.bean.NameInfo;
 
 /**
@@ -75,6 +76,18 @@ public class WanhiveClient implements Client {
 		connect(host, timeout, ssl);
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param host    The remote host's address
+	 * @param timeout The read timeout in milliseconds (set to 0 to block forever)
+	 * @param ssl     Enable or disable secure connection
+	 * @throws IOException
+	 */
+	WanhiveClient(HostAddress host, int timeout, boolean ssl) throws IOException {
+		connect(host, timeout, ssl);
+	}
+
 	/**
 	 * Releases the underlying socket connection
 	 * 
@@ -117,6 +130,29 @@ public class WanhiveClient implements Client {
 	 * @throws IOException
 	 */
 	void connect(NameInfo host, int timeout, boolean ssl) throws IOException {
+		connect(new InetSocketAddress(host.getHost(), Integer.parseInt(host.getService())), timeout, ssl);
+	}
+
+	/**
+	 * Connects to a remote host (closes any existing connection). The cached
+	 * socket address of the host is reused, and discarded if the connection
+	 * fails.
+	 * 
+	 * @param host    The remote host's address
+	 * @param timeout The read timeout in milliseconds (set to 0 to block forever)
+	 * @param ssl     Enable or disable secure connection
+	 * @throws IOException
+	 */
+	void connect(HostAddress host, int timeout, boolean ssl) throws IOException {
+		try {
+			connect(host.getSocketAddress(), timeout, ssl);
+		} catch (IOException e) {
+			host.invalidate();
+			throw e;
+		}
+	}
+
+	private void connect(InetSocketAddress address, int timeout, boolean ssl) throws IOException {
 		try {
 			close();
 			if (ssl) {
@@ -124,7 +160,7 @@ public class WanhiveClient implements Client {
 			} else {
 				socket = new Socket();
 			}
-			socket.connect(new InetSocketAddress(host.getHost(), Integer.parseInt(host.getService())), timeout);
+			socket.connect(address, timeout);
 			setTimeout(timeout);
 		} catch (IOException e) {
 			close();
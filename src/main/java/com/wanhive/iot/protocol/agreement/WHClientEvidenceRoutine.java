@@ -46,12 +46,11 @@ public class WHClientEvidenceRoutine extends SRP6Routines implements ClientEvide
 	@Override
 	public BigInteger computeClientEvidence(SRP6CryptoParams cryptoParams, SRP6ClientEvidenceContext ctx) {
 		final int padLength = (cryptoParams.N.bitLength() + 7) / 8;
-		MessageDigest digest = cryptoParams.getMessageDigestInstance();
-		digest.reset();
+		MessageDigest digest = WHDigests.get(cryptoParams);
 
-		digest.update(getPadded(ctx.A, padLength));
-		digest.update(getPadded(ctx.B, padLength));
-		digest.update(getPadded(ctx.S, padLength));
+		WHDigests.updatePadded(digest, ctx.A, padLength);
+		WHDigests.updatePadded(digest, ctx.B, padLength);
+		WHDigests.updatePadded(digest, ctx.S, padLength);
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
 
@@ -0,0 +1,112 @@
+/*
+ * WHDigests.java
+ * 
+ * Per-thread message digests for the SRP-6a routines
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.agreement;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import com.nimbusds.srp6.SRP6CryptoParams;
+
+/**
+ * Reusable, per-thread message digests and allocation-free padded hashing
+ * 
+ * @author amit
+ *
+ */
+final class WHDigests {
+	/**
+	 * The padding buffer of each thread
+	 */
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>();
+	/**
+	 * The most recently used digest of each thread
+	 */
+	private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>();
+
+	private WHDigests() {
+
+	}
+
+	/**
+	 * Returns the calling thread's digest for the given crypto parameters. The
+	 * digest is reset before it is returned. The digest must not be shared with
+	 * other threads.
+	 * 
+	 * @param params The SRP-6a crypto parameters
+	 * @return A reset MessageDigest for the hash algorithm 'H'
+	 */
+	static MessageDigest get(SRP6CryptoParams params) {
+		MessageDigest digest = DIGEST.get();
+		if (digest == null || !digest.getAlgorithm().equals(params.H)) {
+			digest = params.getMessageDigestInstance();
+			if (digest == null) {
+				throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + params.H);
+			}
+			DIGEST.set(digest);
+		}
+		digest.reset();
+		return digest;
+	}
+
+	/**
+	 * Updates the digest with the unsigned big-endian representation of the
+	 * given value, left-padded with zeros to the given length. Equivalent to
+	 * hashing the output of SRP6Routines.getPadded, the padded value is written
+	 * into the calling thread's scratch buffer instead of new arrays.
+	 * 
+	 * @param digest The message digest
+	 * @param value  A non-negative integer
+	 * @param length The padded length in bytes
+	 */
+	static void updatePadded(MessageDigest digest, BigInteger value, int length) {
+		int size = (value.bitLength() + 7) >>> 3;
+		int total = Math.max(length, size);
+		byte[] buffer = scratch(total);
+		int pad = total - size;
+		Arrays.fill(buffer, 0, pad, (byte) 0);
+		// BigInteger can only copy its magnitude into a new array, read the bits
+		for (int i = total - 1, bit = 0; i >= pad; --i, bit += 8) {
+			int b = 0;
+			for (int k = 7; k >= 0; --k) {
+				b = (b << 1) | (value.testBit(bit + k) ? 1 : 0);
+			}
+			buffer[i] = (byte) b;
+		}
+		digest.update(buffer, 0, total);
+	}
+
+	/**
+	 * Returns the calling thread's scratch buffer, grown to the given size
+	 */
+	private static byte[] scratch(int size) {
+		byte[] buffer = SCRATCH.get();
+		if (buffer == null || buffer.length < size) {
+			buffer = new byte[size];
+			SCRATCH.set(buffer);
+		}
+		return buffer;
+	}
+}
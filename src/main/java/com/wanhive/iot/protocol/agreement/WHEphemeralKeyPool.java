@@ -0,0 +1,186 @@
+/*
+ * WHEphemeralKeyPool.java
+ * 
+ * Pool of pre-generated client ephemeral values
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.agreement;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+import com.nimbusds.srp6.SRP6Routines;
+
+/**
+ * Bounded pool of client ephemeral key pairs (a, A) generated by a background
+ * thread. Every pair is handed out exactly once and then discarded, so a pair
+ * is never reused between two sessions.
+ * 
+ * @author amit
+ * 
+ */
+public class WHEphemeralKeyPool implements AutoCloseable {
+	private static final String BAD_REQUEST = "Not allowed";
+	private final WHSRP6Group group;
+	private final BlockingQueue<KeyPair> pool;
+	private final SRP6Routines routines = new SRP6Routines();
+	private final SecureRandom random = new SecureRandom();
+	private Thread generator;
+
+	/**
+	 * Single-use client ephemeral key pair
+	 * 
+	 * @author amit
+	 * 
+	 */
+	public static final class KeyPair {
+		private final BigInteger a;
+		private final BigInteger A;
+
+		private KeyPair(BigInteger a, BigInteger A) {
+			this.a = a;
+			this.A = A;
+		}
+
+		/**
+		 * Returns the client private value
+		 * 
+		 * @return The private value 'a'
+		 */
+		public BigInteger getPrivateValue() {
+			return a;
+		}
+
+		/**
+		 * Returns the client public value
+		 * 
+		 * @return The public value 'A'
+		 */
+		public BigInteger getPublicValue() {
+			return A;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param group    The group for which the key pairs will be generated
+	 * @param capacity The maximum number of key pairs kept ready
+	 */
+	public WHEphemeralKeyPool(WHSRP6Group group, int capacity) {
+		if (group == null) {
+			throw new IllegalArgumentException("The group must not be null");
+		}
+		this.group = group;
+		this.pool = new ArrayBlockingQueue<KeyPair>(capacity);
+	}
+
+	/**
+	 * Returns the group of this pool
+	 * 
+	 * @return The group for which the key pairs are generated
+	 */
+	public WHSRP6Group getGroup() {
+		return group;
+	}
+
+	/**
+	 * Generates a fresh key pair on the calling thread
+	 * 
+	 * @return A new key pair
+	 */
+	public KeyPair generate() {
+		BigInteger a = routines.generatePrivateValue(group.getConfig().N, random);
+		return new KeyPair(a, group.computePublicClientValue(a));
+	}
+
+	/**
+	 * Removes and returns a ready key pair
+	 * 
+	 * @return A key pair, null if the pool is empty
+	 */
+	public KeyPair poll() {
+		return pool.poll();
+	}
+
+	/**
+	 * Returns the number of ready key pairs
+	 * 
+	 * @return The number of key pairs in the pool
+	 */
+	public int size() {
+		return pool.size();
+	}
+
+	/**
+	 * Starts the background generator. Fails if it is already running.
+	 */
+	public synchronized void start() {
+		if (generator != null) {
+			throw new IllegalStateException(BAD_REQUEST);
+		}
+
+		generator = new Thread(() -> {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					pool.put(generate());
+				}
+			} catch (InterruptedException e) {
+
+			} catch (Exception e) {
+				Logger.getGlobal().warning(e.getMessage());
+			}
+		}, "WHEphemeralKeyPool");
+		generator.setDaemon(true);
+		generator.setPriority(Thread.MIN_PRIORITY);
+		generator.start();
+	}
+
+	/**
+	 * Checks the background generator's state
+	 * 
+	 * @return true if the background generator is running, false otherwise
+	 */
+	public synchronized boolean isRunning() {
+		return generator != null && generator.isAlive();
+	}
+
+	/**
+	 * Stops the background generator and discards the ready key pairs
+	 */
+	@Override
+	public synchronized void close() {
+		if (generator != null) {
+			try {
+				generator.interrupt();
+				generator.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				generator = null;
+			}
+		}
+		pool.clear();
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * WHFixedBaseTable.java
+ * 
+ * Precomputed fixed-base modular exponentiation
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.agreement;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Fixed-base windowed exponentiation table. For a base 'g', an odd modulus 'N'
+ * and a window of 'w' bits, the table stores g^(d * 2^(w*i)) mod N for every
+ * digit 'd' of every window 'i' in the Montgomery representation. An
+ * exponentiation then costs one Montgomery multiplication per non-zero window
+ * and no squarings. The table is immutable and can be shared between threads.
+ * 
+ * @author amit
+ * 
+ */
+public final class WHFixedBaseTable {
+	private static final long MASK = 0xffffffffL;
+	/**
+	 * The base 'g'
+	 */
+	private final BigInteger base;
+	/**
+	 * The modulus 'N'
+	 */
+	private final BigInteger modulus;
+	/**
+	 * The window size in bits
+	 */
+	private final int window;
+	/**
+	 * The largest supported exponent size in bits
+	 */
+	private final int maxBits;
+	/**
+	 * Number of 32-bit words in the modulus
+	 */
+	private final int words;
+	/**
+	 * The modulus in little-endian words
+	 */
+	private final int[] n;
+	/**
+	 * -N^(-1) mod 2^32
+	 */
+	private final int nPrime;
+	/**
+	 * The precomputed powers, indexed by (window << w) | digit
+	 */
+	private final int[][] table;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param base    The fixed base 'g'
+	 * @param modulus The modulus 'N', must be odd
+	 * @param window  The window size in bits [1, 16]
+	 * @param maxBits The largest supported exponent size in bits
+	 */
+	public WHFixedBaseTable(BigInteger base, BigInteger modulus, int window, int maxBits) {
+		if (modulus == null || modulus.signum() <= 0 || !modulus.testBit(0)) {
+			throw new IllegalArgumentException("The modulus must be a positive odd integer");
+		} else if (window < 1 || window > 16) {
+			throw new IllegalArgumentException("Invalid window size");
+		} else if (maxBits < 1) {
+			throw new IllegalArgumentException("Invalid exponent size");
+		}
+
+		this.base = base.mod(modulus);
+		this.modulus = modulus;
+		this.window = window;
+		this.maxBits = maxBits;
+		this.words = (modulus.bitLength() + 31) >>> 5;
+		this.n = toWords(modulus, words);
+		this.nPrime = BigInteger.valueOf(n[0] & MASK).modInverse(BigInteger.ONE.shiftLeft(32)).negate().intValue();
+
+		final int digits = 1 << window;
+		final int rows = (maxBits + window - 1) / window;
+		final BigInteger r = BigInteger.ONE.shiftLeft(words << 5);
+		int[] scratch = new int[words + 2];
+		int[] rowBase = toWords(this.base.multiply(r).mod(modulus), words);
+		table = new int[rows << window][];
+		for (int i = 0; i < rows; ++i) {
+			int offset = i << window;
+			table[offset + 1] = rowBase;
+			for (int d = 2; d < digits; ++d) {
+				int[] value = new int[words];
+				multiply(table[offset + d - 1], rowBase, scratch, value);
+				table[offset + d] = value;
+			}
+			// The next row's base is this row's base raised to 2^w
+			int[] next = new int[words];
+			multiply(table[offset + digits - 1], rowBase, scratch, next);
+			rowBase = next;
+		}
+	}
+
+	/**
+	 * Constructor, supports exponents as wide as the modulus
+	 * 
+	 * @param base    The fixed base 'g'
+	 * @param modulus The modulus 'N', must be odd
+	 * @param window  The window size in bits [1, 16]
+	 */
+	public WHFixedBaseTable(BigInteger base, BigInteger modulus, int window) {
+		this(base, modulus, window, modulus.bitLength());
+	}
+
+	/**
+	 * Returns the fixed base
+	 * 
+	 * @return The base 'g'
+	 */
+	public BigInteger getBase() {
+		return base;
+	}
+
+	/**
+	 * Returns the modulus
+	 * 
+	 * @return The modulus 'N'
+	 */
+	public BigInteger getModulus() {
+		return modulus;
+	}
+
+	/**
+	 * Returns the window size
+	 * 
+	 * @return The window size in bits
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Computes g^e mod N. Exponents wider than the table or negative exponents
+	 * fall back to {@link BigInteger#modPow(BigInteger, BigInteger)}.
+	 * 
+	 * @param exponent The exponent 'e'
+	 * @return g^e mod N
+	 */
+	public BigInteger pow(BigInteger exponent) {
+		if (exponent.signum() < 0 || exponent.bitLength() > maxBits) {
+			return base.modPow(exponent, modulus);
+		} else if (exponent.signum() == 0) {
+			return BigInteger.ONE.mod(modulus);
+		}
+
+		final int bits = exponent.bitLength();
+		final int[] e = toWords(exponent, (bits + 31) >>> 5);
+		final int mask = (1 << window) - 1;
+		int[] scratch = new int[words + 2];
+		int[] acc = null;
+		for (int i = 0, bit = 0; bit < bits; ++i, bit += window) {
+			int digit = digit(e, bit) & mask;
+			if (digit == 0) {
+				continue;
+			} else if (acc == null) {
+				acc = table[(i << window) | digit].clone();
+			} else {
+				multiply(acc, table[(i << window) | digit], scratch, acc);
+			}
+		}
+
+		// Convert back from the Montgomery representation
+		int[] one = new int[words];
+		one[0] = 1;
+		multiply(acc, one, scratch, acc);
+		return fromWords(acc);
+	}
+
+	/**
+	 * Returns the (at most 32) bits of the exponent starting at the given position
+	 */
+	private static int digit(int[] e, int bit) {
+		int index = bit >>> 5;
+		int shift = bit & 31;
+		long lo = e[index] & MASK;
+		long hi = (index + 1 < e.length) ? (e[index + 1] & MASK) : 0;
+		return (int) (((hi << 32) | lo) >>> shift);
+	}
+
+	/**
+	 * Montgomery multiplication (CIOS): out = a * b * R^(-1) mod N. The output may
+	 * alias either of the inputs.
+	 */
+	private void multiply(int[] a, int[] b, int[] t, int[] out) {
+		final int s = words;
+		Arrays.fill(t, 0);
+		for (int i = 0; i < s; ++i) {
+			long c = 0;
+			final long ai = a[i] & MASK;
+			for (int j = 0; j < s; ++j) {
+				c += (t[j] & MASK) + ai * (b[j] & MASK);
+				t[j] = (int) c;
+				c >>>= 32;
+			}
+			c += t[s] & MASK;
+			t[s] = (int) c;
+			t[s + 1] = (int) (c >>> 32);
+
+			final long m = (t[0] * nPrime) & MASK;
+			c = ((t[0] & MASK) + m * (n[0] & MASK)) >>> 32;
+			for (int j = 1; j < s; ++j) {
+				c += (t[j] & MASK) + m * (n[j] & MASK);
+				t[j - 1] = (int) c;
+				c >>>= 32;
+			}
+			c += t[s] & MASK;
+			t[s - 1] = (int) c;
+			t[s] = t[s + 1] + (int) (c >>> 32);
+		}
+
+		// The result is less than 2N, subtract N once if required
+		boolean subtract = (t[s] != 0);
+		if (!subtract) {
+			subtract = true;
+			for (int j = s - 1; j >= 0; --j) {
+				int cmp = Integer.compareUnsigned(t[j], n[j]);
+				if (cmp != 0) {
+					subtract = (cmp > 0);
+					break;
+				}
+			}
+		}
+
+		if (subtract) {
+			long borrow = 0;
+			for (int j = 0; j < s; ++j) {
+				long d = (t[j] & MASK) - (n[j] & MASK) - borrow;
+				out[j] = (int) d;
+				borrow = d >>> 63;
+			}
+		} else {
+			System.arraycopy(t, 0, out, 0, s);
+		}
+	}
+
+	/**
+	 * Converts a non-negative integer into little-endian 32-bit words
+	 */
+	private static int[] toWords(BigInteger value, int count) {
+		byte[] bytes = value.toByteArray();
+		int[] result = new int[count];
+		for (int i = 0, j = bytes.length - 1; j >= 0 && i < (count << 2); ++i, --j) {
+			result[i >>> 2] |= (bytes[j] & 0xff) << ((i & 3) << 3);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts little-endian 32-bit words into a non-negative integer
+	 */
+	private static BigInteger fromWords(int[] words) {
+		byte[] bytes = new byte[(words.length << 2) + 1];
+		for (int i = 0, j = bytes.length - 1; i < (words.length << 2); ++i, --j) {
+			bytes[j] = (byte) (words[i >>> 2] >>> ((i & 3) << 3));
+		}
+		return new BigInteger(bytes);
+	}
+}
@@ -115,6 +115,16 @@ public class WHSRP6ClientSession extends SRP6Session {
 	 */
 	private XRoutine xRoutine = null;
 
+	/**
+	 * Shared group parameters and precomputations (optional).
+	 */
+	private transient WHSRP6Group group = null;
+
+	/**
+	 * Source of pre-generated ephemeral key pairs (optional).
+	 */
+	private transient WHEphemeralKeyPool keyPool = null;
+
 	/**
 	 * Creates a new client-side SRP-6a authentication session and sets its state to
 	 * {@link State#INIT}.
@@ -154,6 +164,7 @@ public class WHSRP6ClientSession extends SRP6Session {
 		session.setXRoutine(new WHXRoutine(rounds));
 		session.setClientEvidenceRoutine(new WHClientEvidenceRoutine());
 		session.setServerEvidenceRoutine(new WHServerEvidenceRoutine());
+		session.setGroup(WHSRP6Group.getDefault());
 		return session;
 	}
 
@@ -163,7 +174,52 @@ public class WHSRP6ClientSession extends SRP6Session {
 	 * @return SRP6CryptoParams object suitable for Wanhive
 	 */
 	public static SRP6CryptoParams getDefaultConfig() {
-		return SRP6CryptoParams.getInstance(2048, "SHA-512");
+		return WHSRP6Group.getDefault().getConfig();
+	}
+
+	/**
+	 * Sets the shared group parameters. The group is used only if it matches the
+	 * crypto parameters supplied to {@link #step1}.
+	 * 
+	 * @param group The shared group or {@code null} to compute everything inside
+	 *              the session.
+	 */
+	public void setGroup(final WHSRP6Group group) {
+
+		this.group = group;
+	}
+
+	/**
+	 * Gets the shared group parameters.
+	 * 
+	 * @return The shared group or {@code null} if none has been set
+	 */
+	public WHSRP6Group getGroup() {
+
+		return group;
+	}
+
+	/**
+	 * Sets the pool of pre-generated ephemeral key pairs. A key pair is taken from
+	 * the pool in {@link #step1} if the pool's group matches the crypto
+	 * parameters and a key pair is ready, otherwise the key pair is generated
+	 * inline.
+	 * 
+	 * @param keyPool The key pool or {@code null} to always generate inline.
+	 */
+	public void setKeyPool(final WHEphemeralKeyPool keyPool) {
+
+		this.keyPool = keyPool;
+	}
+
+	/**
+	 * Gets the pool of pre-generated ephemeral key pairs.
+	 * 
+	 * @return The key pool or {@code null} if none has been set
+	 */
+	public WHEphemeralKeyPool getKeyPool() {
+
+		return keyPool;
 	}
 
 	/**
@@ -216,7 +272,7 @@ public class WHSRP6ClientSession extends SRP6Session {
 
 		this.config = config;
 
-		MessageDigest digest = config.getMessageDigestInstance();
+		MessageDigest digest = WHDigests.get(config);
 
 		if (userID == null || userID.trim().isEmpty()) {
 			throw new IllegalArgumentException("The user identity 'I' must not be null or empty");
@@ -234,11 +290,31 @@ public class WHSRP6ClientSession extends SRP6Session {
 		if (state != State.INIT)
 			throw new IllegalStateException("State violation: Session must be in INIT state");
 
-		// Generate client private and public values
-		a = srp6Routines.generatePrivateValue(config.N, random);
-		digest.reset();
+		// Use the shared group only if it matches the crypto parameters
+		if (group != null && !group.matches(config)) {
+			group = null;
+		}
 
-		A = srp6Routines.computePublicClientValue(config.N, config.g, a);
+		// Take the client private and public values from the pool if possible
+		WHEphemeralKeyPool.KeyPair pair = null;
+		if (keyPool != null && keyPool.getGroup().matches(config)) {
+			pair = keyPool.poll();
+		}
+
+		if (pair != null) {
+			a = pair.getPrivateValue();
+			A = pair.getPublicValue();
+		} else {
+			// Generate client private and public values
+			a = srp6Routines.generatePrivateValue(config.N, random);
+			digest.reset();
+
+			if (group != null) {
+				A = group.computePublicClientValue(a);
+			} else {
+				A = srp6Routines.computePublicClientValue(config.N, config.g, a);
+			}
+		}
 
 		state = State.STEP_1;
 
@@ -271,10 +347,7 @@ public class WHSRP6ClientSession extends SRP6Session {
 	 */
 	public SRP6ClientCredentials step2(final BigInteger s, final BigInteger B) throws SRP6Exception {
 
-		MessageDigest digest = config.getMessageDigestInstance();
-
-		if (digest == null)
-			throw new IllegalArgumentException("Unsupported hash algorithm 'H': " + config.H);
+		MessageDigest digest = WHDigests.get(config);
 
 		if (s == null)
 			throw new IllegalArgumentException("The salt 's' must not be null");
@@ -302,7 +375,7 @@ public class WHSRP6ClientSession extends SRP6Session {
 		if (xRoutine != null) {
 
 			// With custom routine
-			x = xRoutine.computeX(config.getMessageDigestInstance(), BigIntegerUtils.bigIntegerToBytes(s),
+			x = xRoutine.computeX(digest, BigIntegerUtils.bigIntegerToBytes(s),
 					userID.getBytes(Charset.forName("UTF-8")), password);
 
 		} else {
@@ -312,8 +385,12 @@ public class WHSRP6ClientSession extends SRP6Session {
 		}
 
 		// Compute the session key
-		k = srp6Routines.computeK(digest, config.N, config.g);
-		digest.reset();
+		if (group != null) {
+			k = group.getK();
+		} else {
+			k = srp6Routines.computeK(digest, config.N, config.g);
+			digest.reset();
+		}
 
 		if (hashedKeysRoutine != null) {
 			URoutineContext hashedKeysContext = new URoutineContext(A, B);
@@ -323,7 +400,11 @@ public class WHSRP6ClientSession extends SRP6Session {
 			digest.reset();
 		}
 
-		S = srp6Routines.computeSessionKey(config.N, config.g, k, x, u, a, B);
+		if (group != null) {
+			S = group.computeSessionKey(x, u, a, B);
+		} else {
+			S = srp6Routines.computeSessionKey(config.N, config.g, k, x, u, a, B);
+		}
 
 		// Compute the client evidence message
 		if (clientEvidenceRoutine != null) {
@@ -0,0 +1,179 @@
+/*
+ * WHSRP6Group.java
+ * 
+ * Shared SRP-6a group parameters and precomputations
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.agreement;
+
+import java.math.BigInteger;
+
+import com.nimbusds.srp6.SRP6CryptoParams;
+import com.nimbusds.srp6.SRP6Routines;
+
+/**
+ * SRP-6a group parameters and the values derived from them. The crypto
+ * parameters and the multiplier 'k' are computed once, the fixed-base
+ * exponentiation table for the generator 'g' is built on demand. An instance
+ * is immutable after {@link #precompute(int)} and can be shared by any number
+ * of sessions and threads.
+ * 
+ * @author amit
+ * 
+ */
+public class WHSRP6Group {
+	/**
+	 * The recommended window size (in bits) of the fixed-base table
+	 */
+	public static final int DEFAULT_WINDOW = 6;
+	/**
+	 * The SRP-6a crypto parameters
+	 */
+	private final SRP6CryptoParams config;
+	/**
+	 * The multiplier parameter 'k'
+	 */
+	private final BigInteger k;
+	/**
+	 * The fixed-base exponentiation table for 'g' (null if not yet computed)
+	 */
+	private volatile WHFixedBaseTable table;
+
+	/**
+	 * Lazily initialized default group
+	 */
+	private static class DefaultGroup {
+		static final WHSRP6Group INSTANCE = new WHSRP6Group(SRP6CryptoParams.getInstance(2048, "SHA-512"));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param config The SRP-6a crypto parameters
+	 */
+	public WHSRP6Group(SRP6CryptoParams config) {
+		if (config == null) {
+			throw new IllegalArgumentException("The SRP-6a crypto parameters must not be null");
+		}
+		this.config = config;
+		this.k = new SRP6Routines().computeK(config.getMessageDigestInstance(), config.N, config.g);
+	}
+
+	/**
+	 * Returns the group suitable for Wanhive (2048-bit prime, SHA-512)
+	 * 
+	 * @return The shared default group
+	 */
+	public static WHSRP6Group getDefault() {
+		return DefaultGroup.INSTANCE;
+	}
+
+	/**
+	 * Returns the crypto parameters
+	 * 
+	 * @return The SRP-6a crypto parameters
+	 */
+	public SRP6CryptoParams getConfig() {
+		return config;
+	}
+
+	/**
+	 * Returns the multiplier parameter
+	 * 
+	 * @return The multiplier 'k'
+	 */
+	public BigInteger getK() {
+		return k;
+	}
+
+	/**
+	 * Builds the fixed-base exponentiation table for the generator. With the
+	 * 2048-bit group and the default window the table takes roughly 6 MB of heap.
+	 * Repeated calls with the same window are no-ops.
+	 * 
+	 * @param window The window size in bits, see {@link #DEFAULT_WINDOW}
+	 */
+	public synchronized void precompute(int window) {
+		if (table == null || table.getWindow() != window) {
+			table = new WHFixedBaseTable(config.g, config.N, window);
+		}
+	}
+
+	/**
+	 * Checks whether the fixed-base table is available
+	 * 
+	 * @return true if the fixed-base table has been computed, false otherwise
+	 */
+	public boolean isPrecomputed() {
+		return table != null;
+	}
+
+	/**
+	 * Checks whether the given crypto parameters describe this group
+	 * 
+	 * @param params The SRP-6a crypto parameters
+	 * @return true if the parameters match this group, false otherwise
+	 */
+	public boolean matches(SRP6CryptoParams params) {
+		return params == config || (params != null && params.N.equals(config.N) && params.g.equals(config.g)
+				&& params.H.equals(config.H));
+	}
+
+	/**
+	 * Computes g^e mod N, using the fixed-base table if it is available
+	 * 
+	 * @param e The exponent
+	 * @return g^e mod N
+	 */
+	public BigInteger pow(BigInteger e) {
+		WHFixedBaseTable t = table;
+		if (t != null) {
+			return t.pow(e);
+		} else {
+			return config.g.modPow(e, config.N);
+		}
+	}
+
+	/**
+	 * Computes the public client value A = g^a mod N
+	 * 
+	 * @param a The client private value 'a'
+	 * @return The public client value 'A'
+	 */
+	public BigInteger computePublicClientValue(BigInteger a) {
+		return pow(a);
+	}
+
+	/**
+	 * Computes the session key S = (B - k * g^x) ^ (a + u * x) mod N
+	 * 
+	 * @param x The password key 'x'
+	 * @param u The random scrambling parameter 'u'
+	 * @param a The client private value 'a'
+	 * @param B The public server value 'B'
+	 * @return The session key 'S'
+	 */
+	public BigInteger computeSessionKey(BigInteger x, BigInteger u, BigInteger a, BigInteger B) {
+		final BigInteger exp = u.multiply(x).add(a);
+		final BigInteger tmp = pow(x).multiply(k);
+		return B.subtract(tmp).modPow(exp, config.N);
+	}
+}
@@ -45,12 +45,11 @@ public class WHServerEvidenceRoutine extends SRP6Routines implements ServerEvide
 	@Override
 	public BigInteger computeServerEvidence(SRP6CryptoParams cryptoParams, SRP6ServerEvidenceContext ctx) {
 		final int padLength = (cryptoParams.N.bitLength() + 7) / 8;
-		MessageDigest digest = cryptoParams.getMessageDigestInstance();
-		digest.reset();
+		MessageDigest digest = WHDigests.get(cryptoParams);
 
-		digest.update(getPadded(ctx.A, padLength));
-		digest.update(getPadded(ctx.M1, padLength));
-		digest.update(getPadded(ctx.S, padLength));
+		WHDigests.updatePadded(digest, ctx.A, padLength);
+		WHDigests.updatePadded(digest, ctx.M1, padLength);
+		WHDigests.updatePadded(digest, ctx.S, padLength);
 		return BigIntegerUtils.bigIntegerFromBytes(digest.digest());
 	}
 
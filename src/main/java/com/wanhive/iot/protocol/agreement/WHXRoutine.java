@@ -25,6 +25,7 @@
 package com.wanhive.iot.protocol.agreement;
 
 import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 
 import com.nimbusds.srp6.BigIntegerUtils;
@@ -50,6 +51,39 @@ public class WHXRoutine implements XRoutine {
 
 	@Override
 	public BigInteger computeX(MessageDigest digest, byte[] salt, byte[] username, byte[] password) {
+		final int length = digest.getDigestLength();
+		if (length <= 0) {
+			// The provider doesn't report the digest length
+			return computeX(digest, salt, username, password, rounds);
+		}
+
+		try {
+			// Every round hashes into the same buffer
+			byte[] x = new byte[length];
+			digest.reset();
+			digest.update(username);
+			digest.update((byte) ':');
+			digest.update(password);
+			digest.digest(x, 0, length); // H ( I | ":" | p)
+
+			int i = rounds;
+			do {
+				digest.update(salt);
+				digest.update(x, 0, length);
+				digest.digest(x, 0, length);
+			} while ((--i) > 0);
+
+			return BigIntegerUtils.bigIntegerFromBytes(x);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Computes the private key, allocates a new array in every round
+	 */
+	private static BigInteger computeX(MessageDigest digest, byte[] salt, byte[] username, byte[] password,
+			int rounds) {
 		digest.reset();
 		digest.update(username);
 		digest.update((byte) ':');
@@ -0,0 +1,249 @@
+/*
+ * HostAddress.java
+ * 
+ * Parsed and resolved network address of a wanhive host
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.bean;
+
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact network address of a wanhive host: an interned host name, a parsed
+ * port number and the host type. The resolved socket address is cached and
+ * resolved again after its time-to-live expires, so that repeated connections
+ * skip the parsing and the name lookup.
+ * 
+ * @author amit
+ * 
+ */
+public final class HostAddress implements Serializable {
+	/**
+	 * The version number
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The default time-to-live of a resolved address in milliseconds
+	 */
+	public static final long DEFAULT_TTL = 60000;
+	private static final String BAD_PORT = "Invalid port";
+	/**
+	 * The host name (interned)
+	 */
+	private final String host;
+	/**
+	 * The port number
+	 */
+	private final int port;
+	/**
+	 * The host type
+	 */
+	private final int type;
+	/**
+	 * Time-to-live of the resolved address in nanoseconds
+	 */
+	private final long ttl;
+	/**
+	 * The cached socket address
+	 */
+	private transient volatile Resolved resolved;
+
+	/**
+	 * A resolved socket address and its expiration time
+	 */
+	private static final class Resolved {
+		final InetSocketAddress address;
+		final long expires;
+
+		Resolved(InetSocketAddress address, long expires) {
+			this.address = address;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param host The host name
+	 * @param port The port number
+	 * @param type The host type
+	 * @param ttl  Time-to-live of the resolved address
+	 * @param unit The time unit of the time-to-live
+	 */
+	public HostAddress(String host, int port, int type, long ttl, TimeUnit unit) {
+		if (port < 0 || port > 0xffff) {
+			throw new IllegalArgumentException(BAD_PORT);
+		}
+		this.host = host.intern();
+		this.port = port;
+		this.type = type;
+		this.ttl = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Constructor, uses the default time-to-live
+	 * 
+	 * @param host The host name
+	 * @param port The port number
+	 * @param type The host type
+	 */
+	public HostAddress(String host, int port, int type) {
+		this(host, port, type, DEFAULT_TTL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a host address from a NameInfo object
+	 * 
+	 * @param ni The NameInfo object containing the host's network address
+	 * @return A new host address
+	 * @throws NumberFormatException if the service is not a port number
+	 */
+	public static HostAddress of(NameInfo ni) {
+		return new HostAddress(ni.getHost(), Integer.parseInt(ni.getService()), ni.getType());
+	}
+
+	/**
+	 * Get the host name
+	 * 
+	 * @return The string containing the host name
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Get the port number
+	 * 
+	 * @return The port number
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Get the host type
+	 * 
+	 * @return The host type identifier
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the socket address, resolves the host name if the cached address
+	 * has expired. A failed resolution is not cached.
+	 * 
+	 * @return The socket address (unresolved if the name lookup failed)
+	 */
+	public InetSocketAddress getSocketAddress() {
+		Resolved r = resolved;
+		long now = System.nanoTime();
+		if (r != null && now - r.expires < 0) {
+			return r.address;
+		}
+
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (!address.isUnresolved()) {
+			resolved = new Resolved(address, now + ttl);
+		}
+		return address;
+	}
+
+	/**
+	 * Discards the cached socket address (for example after a failed connection)
+	 */
+	public void invalidate() {
+		resolved = null;
+	}
+
+	/**
+	 * Checks whether this address describes the given NameInfo object
+	 * 
+	 * @param ni The NameInfo object
+	 * @return true if the host, the service and the type match, false otherwise
+	 */
+	public boolean matches(NameInfo ni) {
+		return ni != null && ni.getType() == type && host.equals(ni.getHost()) && isPort(ni.getService());
+	}
+
+	/**
+	 * Converts this address into a NameInfo object
+	 * 
+	 * @return A new NameInfo object
+	 */
+	public NameInfo toNameInfo() {
+		NameInfo ni = new NameInfo();
+		ni.setHost(host);
+		ni.setService(Integer.toString(port));
+		ni.setType(type);
+		return ni;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof HostAddress)) {
+			return false;
+		} else {
+			HostAddress other = (HostAddress) obj;
+			return port == other.port && type == other.type && host.equals(other.host);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return (host.hashCode() * 31 + port) * 31 + type;
+	}
+
+	@Override
+	public String toString() {
+		return host + ":" + port;
+	}
+
+	/**
+	 * Interns the host name of a deserialized object
+	 */
+	private Object readResolve() {
+		return new HostAddress(host, port, type, ttl, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Checks whether a service string is the decimal form of the port number
+	 */
+	private boolean isPort(String service) {
+		if (service == null || service.isEmpty() || service.length() > 5) {
+			return false;
+		}
+
+		int value = 0;
+		for (int i = 0; i < service.length(); ++i) {
+			char c = service.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value == port;
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * CachingHosts.java
+ * 
+ * Read-through caching decorator for the hosts managers
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wanhive.iot.protocol.bean.NameInfo;
+
+/**
+ * Bounded read-through cache in front of another hosts manager. Lookups are
+ * served from a least-recently-used cache, optionally with a time-to-live.
+ * Unknown identities can be cached as well (negative caching), so that repeated
+ * lookups of a missing host do not reach the backing store. The updates go to
+ * the backing store and invalidate the cached record.
+ * 
+ * The cache is thread safe as long as the backing hosts manager is. The
+ * NameInfo objects returned by {@link #get(long)} are shared and must not be
+ * modified.
+ * 
+ * @author amit
+ * 
+ */
+public class CachingHosts implements Hosts {
+	private static final String BAD_CAPACITY = "Invalid capacity";
+	private final Hosts hosts;
+	private final int capacity;
+	/**
+	 * Time-to-live of a cached record in nanoseconds (0 for no expiry)
+	 */
+	private final long ttl;
+	private final boolean negative;
+	private final LinkedHashMap<Long, CacheEntry> cache;
+	/**
+	 * Incremented on every invalidation, prevents caching of a stale lookup
+	 * which raced with an update.
+	 */
+	private long generation;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * A cached record, the value is null for a missing host
+	 */
+	private static final class CacheEntry {
+		final NameInfo value;
+		final long expires;
+
+		CacheEntry(NameInfo value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hosts    The backing hosts manager
+	 * @param capacity The maximum number of cached records
+	 * @param ttl      The time-to-live of a cached record, 0 for no expiry
+	 * @param unit     The time unit of the time-to-live
+	 * @param negative true to cache the missing hosts, false otherwise
+	 */
+	public CachingHosts(Hosts hosts, int capacity, long ttl, TimeUnit unit, boolean negative) {
+		if (hosts == null) {
+			throw new IllegalArgumentException("The hosts manager must not be null");
+		} else if (capacity < 1) {
+			throw new IllegalArgumentException(BAD_CAPACITY);
+		}
+
+		this.hosts = hosts;
+		this.capacity = capacity;
+		this.ttl = Math.max(unit.toNanos(ttl), 0);
+		this.negative = negative;
+		this.cache = new LinkedHashMap<Long, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+				return size() > CachingHosts.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Constructor, the records never expire and the missing hosts are not cached
+	 * 
+	 * @param hosts    The backing hosts manager
+	 * @param capacity The maximum number of cached records
+	 */
+	public CachingHosts(Hosts hosts, int capacity) {
+		this(hosts, capacity, 0, TimeUnit.MILLISECONDS, false);
+	}
+
+	/**
+	 * Returns the backing hosts manager
+	 * 
+	 * @return The hosts manager decorated by this cache
+	 */
+	public Hosts getHosts() {
+		return hosts;
+	}
+
+	/**
+	 * Returns the number of lookups served from the cache
+	 * 
+	 * @return The number of cache hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups forwarded to the backing hosts manager
+	 * 
+	 * @return The number of cache misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of cached records (including the expired ones which are
+	 * yet to be evicted)
+	 * 
+	 * @return The number of cached records
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Removes a record from the cache
+	 * 
+	 * @param identity The identity of the host
+	 */
+	public synchronized void invalidate(long identity) {
+		generation++;
+		cache.remove(identity);
+	}
+
+	/**
+	 * Removes all the records from the cache
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		cache.clear();
+	}
+
+	@Override
+	public NameInfo get(long identity) {
+		long version;
+		synchronized (this) {
+			CacheEntry entry = cache.get(identity);
+			if (entry != null && (ttl == 0 || entry.expires - System.nanoTime() > 0)) {
+				hits.incrementAndGet();
+				if (entry.value != null) {
+					return entry.value;
+				} else {
+					throw new NoSuchElementException("Not found");
+				}
+			} else if (entry != null) {
+				cache.remove(identity);
+			}
+			version = generation;
+		}
+
+		misses.incrementAndGet();
+		NameInfo ni;
+		try {
+			ni = hosts.get(identity);
+		} catch (NoSuchElementException e) {
+			if (negative) {
+				store(identity, null, version);
+			}
+			throw e;
+		}
+		store(identity, ni, version);
+		return ni;
+	}
+
+	/**
+	 * Serves the cached records from memory and looks up all the missing ones
+	 * with a single call to the backing hosts manager
+	 */
+	@Override
+	public NameInfo[] getAll(long[] identities) {
+		NameInfo[] result = new NameInfo[identities.length];
+		int[] missing = new int[identities.length];
+		int count = 0;
+		long version;
+		synchronized (this) {
+			long now = System.nanoTime();
+			for (int i = 0; i < identities.length; ++i) {
+				CacheEntry entry = cache.get(identities[i]);
+				if (entry != null && (ttl == 0 || entry.expires - now > 0)) {
+					result[i] = entry.value;
+				} else {
+					missing[count++] = i;
+				}
+			}
+			version = generation;
+		}
+		hits.addAndGet(identities.length - count);
+		misses.addAndGet(count);
+
+		if (count > 0) {
+			long[] ids = new long[count];
+			for (int i = 0; i < count; ++i) {
+				ids[i] = identities[missing[i]];
+			}
+
+			NameInfo[] loaded = hosts.getAll(ids);
+			for (int i = 0; i < count; ++i) {
+				result[missing[i]] = loaded[i];
+				if (loaded[i] != null || negative) {
+					store(ids[i], loaded[i], version);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void put(long identity, NameInfo ni) {
+		try {
+			hosts.put(identity, ni);
+		} finally {
+			invalidate(identity);
+		}
+	}
+
+	@Override
+	public void remove(long identity) {
+		try {
+			hosts.remove(identity);
+		} finally {
+			invalidate(identity);
+		}
+	}
+
+	@Override
+	public long[] list(int type, int limit) {
+		return hosts.list(type, limit);
+	}
+
+	@Override
+	public void close() {
+		invalidateAll();
+		try {
+			hosts.close();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Caches the result of a lookup unless an invalidation happened meanwhile
+	 */
+	private synchronized void store(long identity, NameInfo ni, long version) {
+		if (version == generation) {
+			cache.put(identity, new CacheEntry(ni, System.nanoTime() + ttl));
+		}
+	}
+}
@@ -24,6 +24,8 @@
 
 package com.wanhive.iot.protocol.hosts;
 
+import java.util.NoSuchElementException;
+
 import com.wanhive.iot.protocol.bean.NameInfo;
 
 /**
@@ -41,6 +43,27 @@ public interface Hosts extends AutoCloseable {
 	 */
 	public NameInfo get(long identity);
 
+	/**
+	 * Returns the network addresses of many Wanhive hosts. The default
+	 * implementation calls {@link #get(long)} for every identity, the
+	 * implementations backed by a database should override it with a bulk query.
+	 * 
+	 * @param identities Identities of the hosts
+	 * @return An array of the NameInfo objects in the order of the given
+	 *         identities, the elements corresponding to the unknown hosts are null
+	 */
+	public default NameInfo[] getAll(long[] identities) {
+		NameInfo[] result = new NameInfo[identities.length];
+		for (int i = 0; i < identities.length; ++i) {
+			try {
+				result[i] = get(identities[i]);
+			} catch (NoSuchElementException e) {
+
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Stores the network address of a Wanhive host
 	 * 
@@ -0,0 +1,166 @@
+/*
+ * HostsIndex.java
+ * 
+ * Per-type index of host identities
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable snapshot of the host identities grouped by host type. Serves
+ * {@link Hosts#list(int, int)} with uniform random samples in O(limit) time.
+ * The hosts managers discard the index whenever their data changes and build a
+ * new one on the next request.
+ * 
+ * @author amit
+ * 
+ */
+final class HostsIndex {
+	private static final long[] EMPTY = new long[0];
+	private final Map<Integer, long[]> index;
+
+	/**
+	 * Collects the identities for a new index
+	 */
+	static final class Builder {
+		private final Map<Integer, Ids> ids = new HashMap<Integer, Ids>();
+
+		private static final class Ids {
+			long[] data = new long[16];
+			int size;
+		}
+
+		/**
+		 * Adds a host to the index
+		 * 
+		 * @param uid  The host's identity
+		 * @param type The host's type
+		 */
+		void add(long uid, int type) {
+			Ids list = ids.get(type);
+			if (list == null) {
+				list = new Ids();
+				ids.put(type, list);
+			} else if (list.size == list.data.length) {
+				list.data = Arrays.copyOf(list.data, list.size << 1);
+			}
+			list.data[list.size++] = uid;
+		}
+
+		/**
+		 * Creates the index
+		 * 
+		 * @return The index of the hosts added so far
+		 */
+		HostsIndex build() {
+			Map<Integer, long[]> index = new HashMap<Integer, long[]>();
+			for (Map.Entry<Integer, Ids> e : ids.entrySet()) {
+				index.put(e.getKey(), Arrays.copyOf(e.getValue().data, e.getValue().size));
+			}
+			return new HostsIndex(index);
+		}
+	}
+
+	private HostsIndex(Map<Integer, long[]> index) {
+		this.index = index;
+	}
+
+	/**
+	 * Returns the number of hosts of the given type
+	 * 
+	 * @param type The host type
+	 * @return The number of hosts of the given type
+	 */
+	int count(int type) {
+		long[] ids = index.get(type);
+		return ids == null ? 0 : ids.length;
+	}
+
+	/**
+	 * Returns a uniform random sample of the identities of the given type, in
+	 * random order
+	 * 
+	 * @param type  The host type
+	 * @param limit The maximum number of identities to return
+	 * @return An array containing at most limit identities
+	 */
+	long[] sample(int type, int limit) {
+		long[] ids = index.get(type);
+		if (ids == null || limit <= 0) {
+			return EMPTY;
+		} else {
+			return sample(ids, ids.length, limit);
+		}
+	}
+
+	/**
+	 * Returns a uniform random sample of the first n elements of an array, in
+	 * random order. The array is not modified.
+	 * 
+	 * @param ids   The source array
+	 * @param n     The number of elements to sample from
+	 * @param limit The maximum sample size
+	 * @return An array containing min(n, limit) elements
+	 */
+	static long[] sample(long[] ids, int n, int limit) {
+		final int k = Math.min(n, Math.max(limit, 0));
+		final ThreadLocalRandom rand = ThreadLocalRandom.current();
+		long[] result;
+		if (k > (n >>> 2)) {
+			// Large sample: partial Fisher–Yates shuffle of a copy
+			result = Arrays.copyOf(ids, n);
+			for (int i = 0; i < k; ++i) {
+				swap(result, i, i + rand.nextInt(n - i));
+			}
+			return (k == n) ? result : Arrays.copyOf(result, k);
+		}
+
+		// Small sample: Floyd's algorithm followed by a shuffle of the sample
+		Set<Integer> chosen = new HashSet<Integer>(k << 1);
+		result = new long[k];
+		int count = 0;
+		for (int j = n - k; j < n; ++j) {
+			int t = rand.nextInt(j + 1);
+			if (!chosen.add(t)) {
+				chosen.add(j);
+				t = j;
+			}
+			result[count++] = ids[t];
+		}
+		for (int i = k - 1; i > 0; --i) {
+			swap(result, i, rand.nextInt(i + 1));
+		}
+		return result;
+	}
+
+	private static void swap(long[] a, int i, int j) {
+		long tmp = a[i];
+		a[i] = a[j];
+		a[j] = tmp;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * HostsParser.java
+ * 
+ * Hosts file tokenizer
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Tokenizer for the lines of a hosts file. A record consists of the tab
+ * separated identity, host name, service name and an optional host type (0 by
+ * default). A line containing just '-' followed by an identity removes that
+ * host. Blank lines and the lines starting with '#' are ignored. The tokenizer
+ * scans the characters directly: the only objects it creates are the host and
+ * service names.
+ * 
+ * The leading comment lines form the header. "# Revision: N" gives the revision
+ * of the hosts data, "# Base: M" marks a delta file which updates revision M to
+ * revision N.
+ * 
+ * @author amit
+ * 
+ */
+final class HostsParser {
+	private static final String BAD_NUMBER = "Invalid number";
+	private static final String REVISION = "Revision:";
+	private static final String BASE = "Base:";
+
+	/**
+	 * Receives the removals in addition to the records
+	 */
+	interface Handler extends HostsVisitor {
+		/**
+		 * Processes a removal
+		 * 
+		 * @param uid The identity of the host to remove
+		 */
+		void remove(long uid);
+	}
+
+	/**
+	 * The header of a hosts file
+	 */
+	static final class Header {
+		/**
+		 * The revision of the hosts data, -1 if not given
+		 */
+		long revision = -1;
+		/**
+		 * The revision updated by a delta file, -1 for a full hosts file
+		 */
+		long base = -1;
+
+		boolean isDelta() {
+			return base >= 0;
+		}
+	}
+
+	private HostsParser() {
+
+	}
+
+	/**
+	 * Reads the header of a hosts file
+	 * 
+	 * @param pathname Pathname of the hosts file
+	 * @return The file's header
+	 * @throws IOException
+	 * @throws NumberFormatException if a revision number is malformed
+	 */
+	static Header readHeader(String pathname) throws IOException {
+		Header header = new Header();
+		try (BufferedReader reader = new BufferedReader(new FileReader(pathname))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0) {
+					continue;
+				} else if (!line.startsWith("#")) {
+					break;
+				}
+
+				line = line.substring(1).trim();
+				if (line.startsWith(REVISION)) {
+					header.revision = revision(line.substring(REVISION.length()).trim());
+				} else if (line.startsWith(BASE)) {
+					header.base = revision(line.substring(BASE.length()).trim());
+				}
+			}
+		}
+		return header;
+	}
+
+	private static long revision(String value) {
+		long revision = parseLong(value, 0, value.length());
+		if (revision < 0) {
+			throw new NumberFormatException(BAD_NUMBER);
+		}
+		return revision;
+	}
+
+	/**
+	 * Parses a line of the hosts file
+	 * 
+	 * @param line    The line to parse
+	 * @param visitor The callback which receives the record
+	 * @return true if the line contained a record or a removal, false if it was
+	 *         skipped. The removals are skipped unless the visitor is a
+	 *         {@link Handler}.
+	 * @throws NumberFormatException if the identity or the type is malformed
+	 */
+	static boolean parse(String line, HostsVisitor visitor) {
+		int end = line.length();
+		int begin = 0;
+		while (begin < end && line.charAt(begin) <= ' ') {
+			++begin;
+		}
+		while (end > begin && line.charAt(end - 1) <= ' ') {
+			--end;
+		}
+
+		if (begin == end || line.charAt(begin) == '#') {
+			return false;
+		}
+
+		int t1 = line.indexOf('\t', begin);
+		if ((t1 < 0 || t1 >= end) && line.charAt(begin) == '-') {
+			if (visitor instanceof Handler) {
+				((Handler) visitor).remove(parseLong(line, begin + 1, end));
+				return true;
+			} else {
+				return false;
+			}
+		} else if (t1 < 0 || t1 >= end) {
+			return false;
+		}
+		int t2 = line.indexOf('\t', t1 + 1);
+		if (t2 < 0 || t2 >= end) {
+			return false;
+		}
+		int t3 = line.indexOf('\t', t2 + 1);
+		if (t3 < 0 || t3 >= end) {
+			t3 = end;
+		}
+
+		long uid = parseLong(line, begin, t1);
+		int type = 0;
+		if (t3 < end) {
+			int t4 = line.indexOf('\t', t3 + 1);
+			type = (int) parseLong(line, t3 + 1, (t4 < 0 || t4 >= end) ? end : t4);
+		}
+		visitor.visit(uid, line.substring(t1 + 1, t2), line.substring(t2 + 1, t3), type);
+		return true;
+	}
+
+	/**
+	 * Parses a signed decimal integer from a region of a string
+	 */
+	static long parseLong(String s, int begin, int end) {
+		boolean negative = false;
+		if (begin < end && (s.charAt(begin) == '-' || s.charAt(begin) == '+')) {
+			negative = (s.charAt(begin) == '-');
+			++begin;
+		}
+
+		if (begin == end) {
+			throw new NumberFormatException(BAD_NUMBER);
+		}
+
+		// Accumulate negatively so that Long.MIN_VALUE is representable
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		final long multmin = limit / 10;
+		long result = 0;
+		for (int i = begin; i < end; ++i) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				throw new NumberFormatException(BAD_NUMBER);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw new NumberFormatException(BAD_NUMBER);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * HostsSnapshot.java
+ * 
+ * Binary hosts snapshot format
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer of the binary hosts snapshot. All values are big-endian:
+ * 
+ * <ul>
+ * <li>Header: magic, version, number of records, number of strings (4 x
+ * int32)</li>
+ * <li>Identities: sorted in ascending order (records x int64)</li>
+ * <li>Records: host string index, service string index, type (records x 3 x
+ * int32)</li>
+ * <li>String offsets: relative to the start of the string data (strings + 1
+ * int32)</li>
+ * <li>String data: UTF-8 encoded, every distinct string is stored once</li>
+ * </ul>
+ * 
+ * @author amit
+ *
+ */
+final class HostsSnapshot implements HostsVisitor {
+	static final int MAGIC = 0x57484853; // "WHHS"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int RECORD_SIZE = 12;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private long[] uids = new long[1024];
+	private int[] records = new int[1024 * 3];
+	private int count = 0;
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final List<String> strings = new ArrayList<String>();
+
+	@Override
+	public void visit(long uid, String host, String service, int type) {
+		if (count > 0 && uid <= uids[count - 1]) {
+			throw new IllegalStateException("Identities must be in ascending order");
+		}
+
+		if (count == uids.length) {
+			uids = Arrays.copyOf(uids, count << 1);
+			records = Arrays.copyOf(records, (count << 1) * 3);
+		}
+
+		uids[count] = uid;
+		records[count * 3] = intern(host);
+		records[count * 3 + 1] = intern(service);
+		records[count * 3 + 2] = type;
+		count++;
+	}
+
+	/**
+	 * Writes the snapshot to a file
+	 * 
+	 * @param pathname Pathname of the snapshot file
+	 * @throws IOException
+	 */
+	void write(String pathname) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(pathname), 65536))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(count);
+			out.writeInt(strings.size());
+			for (int i = 0; i < count; ++i) {
+				out.writeLong(uids[i]);
+			}
+			for (int i = 0; i < count * 3; ++i) {
+				out.writeInt(records[i]);
+			}
+
+			byte[][] data = new byte[strings.size()][];
+			int offset = 0;
+			out.writeInt(offset);
+			for (int i = 0; i < data.length; ++i) {
+				data[i] = strings.get(i).getBytes(UTF8);
+				offset += data[i].length;
+				out.writeInt(offset);
+			}
+			for (byte[] bytes : data) {
+				out.write(bytes);
+			}
+		}
+	}
+
+	private int intern(String s) {
+		Integer i = index.get(s);
+		if (i == null) {
+			i = strings.size();
+			strings.add(s);
+			index.put(s, i);
+		}
+		return i;
+	}
+}
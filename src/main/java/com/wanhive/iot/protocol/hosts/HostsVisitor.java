@@ -0,0 +1,43 @@
+/*
+ * HostsVisitor.java
+ * 
+ * Callback for the enumeration of hosts records
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+/**
+ * Receives the hosts records one at a time during an enumeration
+ * 
+ * @author amit
+ *
+ */
+interface HostsVisitor {
+	/**
+	 * Processes a hosts record
+	 * 
+	 * @param uid     The host's identity
+	 * @param host    The host name
+	 * @param service The service name
+	 * @param type    The host type
+	 */
+	void visit(long uid, String host, String service, int type);
+}
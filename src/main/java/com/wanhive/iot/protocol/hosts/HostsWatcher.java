@@ -0,0 +1,298 @@
+/*
+ * HostsWatcher.java
+ * 
+ * Live reload of the hosts data
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Hosts cache which parses the node lists once and serves them from memory. A
+ * background thread watches the files and atomically replaces the cached list
+ * of a file when it changes. The watcher can also keep a hosts database in sync
+ * with a hosts file, see {@link #watchHosts(String, WanhiveHosts)}.
+ * 
+ * If a file disappears or fails to parse, the last good copy stays in use.
+ * 
+ * @author amit
+ * 
+ */
+public class HostsWatcher implements HostsCache, AutoCloseable {
+	/**
+	 * Delay (in milliseconds) between the last change and the reload of a file
+	 */
+	private static final long QUIET_PERIOD = 200;
+	private final WatchService service;
+	private final Thread watcher;
+	/**
+	 * The watched directories
+	 */
+	private final Map<Path, WatchKey> directories = new ConcurrentHashMap<Path, WatchKey>();
+	/**
+	 * Immutable snapshots of the node lists
+	 */
+	private final Map<Path, long[]> lists = new ConcurrentHashMap<Path, long[]>();
+	/**
+	 * The hosts files and their importers
+	 */
+	private final Map<Path, Loader> hosts = new ConcurrentHashMap<Path, Loader>();
+
+	/**
+	 * Loads a changed file
+	 */
+	private interface Loader {
+		void load(Path path) throws Exception;
+	}
+
+	/**
+	 * Constructor, starts the background watcher
+	 * 
+	 * @throws IOException
+	 */
+	public HostsWatcher() throws IOException {
+		service = FileSystems.getDefault().newWatchService();
+		watcher = new Thread(this::run, "HostsWatcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	@Override
+	public long[] get(String pathname, int count) throws IOException {
+		Path path = normalize(pathname);
+		long[] list = lists.get(path);
+		if (list == null) {
+			watch(path);
+			list = readList(path);
+			long[] current = lists.putIfAbsent(path, list);
+			if (current != null) {
+				list = current;
+			}
+		}
+
+		// Shuffle the first count identifiers
+		long[] result = Arrays.copyOf(list, Math.min(list.length, Math.max(count, 0)));
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+		for (int i = result.length - 1; i > 0; --i) {
+			int j = rand.nextInt(i + 1);
+			long tmp = result[i];
+			result[i] = result[j];
+			result[j] = tmp;
+		}
+		return result;
+	}
+
+	/**
+	 * Imports a hosts file into a hosts database now and again whenever the file
+	 * changes. The database follows the revisions of the file (see
+	 * {@link WanhiveHosts#importHosts(String, int)}): a file which carries the
+	 * revision already in the database is skipped, so an edited file is picked up
+	 * only if its "# Revision" header changes (or if it has none). The import
+	 * adds and replaces records, the hosts are removed through a delta file.
+	 * 
+	 * @param pathname Pathname of the hosts file
+	 * @param db       The hosts database
+	 * @throws Exception
+	 */
+	public void watchHosts(String pathname, WanhiveHosts db) throws Exception {
+		watchHosts(pathname, path -> db.importHosts(path.toString()));
+	}
+
+	/**
+	 * Loads a hosts file into an in-memory hosts manager now and again whenever
+	 * the file changes. Every load replaces all the hosts (see
+	 * {@link InMemoryHosts#replaceHosts(String)}), so that the hosts removed from
+	 * the file are removed from memory too.
+	 * 
+	 * @param pathname Pathname of the hosts file
+	 * @param memory   The in-memory hosts manager
+	 * @throws Exception
+	 */
+	public void watchHosts(String pathname, InMemoryHosts memory) throws Exception {
+		watchHosts(pathname, path -> memory.replaceHosts(path.toString()));
+	}
+
+	/**
+	 * Stops watching the files, the cached lists remain available
+	 */
+	@Override
+	public void close() {
+		try {
+			service.close();
+		} catch (IOException e) {
+
+		}
+		watcher.interrupt();
+	}
+
+	private void watchHosts(String pathname, Loader loader) throws Exception {
+		Path path = normalize(pathname);
+		watch(path);
+		synchronized (loader) {
+			loader.load(path);
+		}
+		hosts.put(path, loader);
+	}
+
+	/**
+	 * Registers the parent directory of a file with the watch service
+	 */
+	private void watch(Path path) throws IOException {
+		Path dir = path.getParent();
+		if (!directories.containsKey(dir)) {
+			synchronized (directories) {
+				if (!directories.containsKey(dir)) {
+					directories.put(dir, dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The background watcher. The events are collected until the files stay
+	 * unchanged for {@link #QUIET_PERIOD} milliseconds, so that a file is not
+	 * read while it is still being written.
+	 */
+	private void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Set<Path> changed = new LinkedHashSet<Path>();
+				WatchKey key = service.take();
+				do {
+					collect(key, changed);
+				} while ((key = service.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null);
+
+				for (Path path : changed) {
+					reload(path);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+
+		}
+	}
+
+	/**
+	 * Adds the files of interest changed according to a watch key
+	 */
+	private void collect(WatchKey key, Set<Path> changed) {
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				for (Path path : lists.keySet()) {
+					if (dir.equals(path.getParent())) {
+						changed.add(path);
+					}
+				}
+				for (Path path : hosts.keySet()) {
+					if (dir.equals(path.getParent())) {
+						changed.add(path);
+					}
+				}
+			} else {
+				Path path = dir.resolve((Path) event.context());
+				if (lists.containsKey(path) || hosts.containsKey(path)) {
+					changed.add(path);
+				}
+			}
+		}
+		key.reset();
+	}
+
+	/**
+	 * Reloads a changed file
+	 */
+	private void reload(Path path) {
+		try {
+			if (lists.containsKey(path)) {
+				lists.put(path, readList(path));
+			}
+
+			Loader loader = hosts.get(path);
+			if (loader != null) {
+				synchronized (loader) {
+					loader.load(path);
+				}
+			}
+		} catch (Exception e) {
+			Logger.getGlobal().warning(path + ": " + e.getMessage());
+		}
+	}
+
+	private static Path normalize(String pathname) {
+		return Paths.get(pathname).toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Reads the whitespace separated identifiers up to the first token which is
+	 * not a number
+	 */
+	private static long[] readList(Path path) throws IOException {
+		String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		long[] list = new long[16];
+		int count = 0;
+		int i = 0;
+		final int length = text.length();
+		while (true) {
+			while (i < length && Character.isWhitespace(text.charAt(i))) {
+				++i;
+			}
+			if (i == length) {
+				break;
+			}
+
+			int begin = i;
+			while (i < length && !Character.isWhitespace(text.charAt(i))) {
+				++i;
+			}
+
+			try {
+				long id = HostsParser.parseLong(text, begin, i);
+				if (count == list.length) {
+					list = Arrays.copyOf(list, count << 1);
+				}
+				list[count++] = id;
+			} catch (NumberFormatException e) {
+				break;
+			}
+		}
+		return Arrays.copyOf(list, count);
+	}
+}
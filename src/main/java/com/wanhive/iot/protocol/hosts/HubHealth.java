@@ -0,0 +1,217 @@
+/*
+ * HubHealth.java
+ * 
+ * Per-hub circuit breakers
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared health state of the hubs. Every hub has a circuit breaker:
+ * <ul>
+ * <li>CLOSED: the hub is healthy and connections are allowed.</li>
+ * <li>OPEN: the hub failed repeatedly, connections are refused until the backoff
+ * period expires. The backoff doubles with every failure (up to a limit) and is
+ * randomized to spread the retries of many endpoints.</li>
+ * <li>HALF_OPEN: the backoff period expired and exactly one caller has been
+ * allowed to probe the hub. The outcome of the probe closes or reopens the
+ * circuit.</li>
+ * </ul>
+ * All the operations are thread safe.
+ * 
+ * @author amit
+ * 
+ */
+public class HubHealth {
+	/**
+	 * The circuit breaker states
+	 */
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final String BAD_ARGUMENT = "Invalid argument";
+	private final int threshold;
+	private final long baseBackoff;
+	private final long maxBackoff;
+	private final ConcurrentHashMap<Long, Circuit> circuits = new ConcurrentHashMap<Long, Circuit>();
+
+	/**
+	 * A circuit breaker, all the access must be synchronized on the object
+	 */
+	private static final class Circuit {
+		State state = State.CLOSED;
+		int failures;
+		/**
+		 * When the open circuit allows a probe, or when a stuck probe is abandoned
+		 */
+		long deadline;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param threshold   The number of consecutive failures which opens the
+	 *                    circuit
+	 * @param baseBackoff The backoff period after the circuit opens
+	 * @param maxBackoff  The longest backoff period
+	 * @param unit        The time unit of the backoff periods
+	 */
+	public HubHealth(int threshold, long baseBackoff, long maxBackoff, TimeUnit unit) {
+		if (threshold < 1 || baseBackoff <= 0 || maxBackoff < baseBackoff) {
+			throw new IllegalArgumentException(BAD_ARGUMENT);
+		}
+		this.threshold = threshold;
+		this.baseBackoff = unit.toNanos(baseBackoff);
+		this.maxBackoff = unit.toNanos(maxBackoff);
+	}
+
+	/**
+	 * Constructor, the circuit opens after two consecutive failures and the
+	 * backoff grows from one second to one minute
+	 */
+	public HubHealth() {
+		this(2, 1, 60, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Asks for a permission to connect with a hub. A caller which is granted the
+	 * permission must report the outcome with {@link #recordSuccess(long)} or
+	 * {@link #recordFailure(long)}.
+	 * 
+	 * @param hub The hub's identity
+	 * @return true if the circuit is closed or if the caller may probe the hub,
+	 *         false otherwise
+	 */
+	public boolean tryAcquire(long hub) {
+		Circuit c = circuits.get(hub);
+		if (c == null) {
+			return true;
+		}
+
+		synchronized (c) {
+			if (c.state == State.CLOSED) {
+				return true;
+			}
+
+			// A probe which never reported back is abandoned after its deadline
+			long now = System.nanoTime();
+			if (now - c.deadline >= 0) {
+				c.state = State.HALF_OPEN;
+				c.deadline = now + maxBackoff;
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a hub is worth trying, does not grant a permission
+	 * 
+	 * @param hub The hub's identity
+	 * @return false if the hub's circuit is open and its backoff period has not
+	 *         expired or if a probe is in progress, true otherwise
+	 */
+	public boolean isAvailable(long hub) {
+		Circuit c = circuits.get(hub);
+		if (c == null) {
+			return true;
+		}
+
+		synchronized (c) {
+			return c.state == State.CLOSED || System.nanoTime() - c.deadline >= 0;
+		}
+	}
+
+	/**
+	 * Records a successful connection, closes the circuit
+	 * 
+	 * @param hub The hub's identity
+	 */
+	public void recordSuccess(long hub) {
+		Circuit c = circuits.get(hub);
+		if (c != null) {
+			synchronized (c) {
+				c.state = State.CLOSED;
+				c.failures = 0;
+			}
+		}
+	}
+
+	/**
+	 * Records a failed connection, opens the circuit if the threshold has been
+	 * reached or if the probe failed
+	 * 
+	 * @param hub The hub's identity
+	 */
+	public void recordFailure(long hub) {
+		Circuit c = circuits.computeIfAbsent(hub, k -> new Circuit());
+		synchronized (c) {
+			c.failures++;
+			if (c.state == State.HALF_OPEN || c.failures >= threshold) {
+				c.state = State.OPEN;
+				c.deadline = System.nanoTime() + backoff(c.failures - threshold);
+			}
+		}
+	}
+
+	/**
+	 * Returns the state of a hub's circuit
+	 * 
+	 * @param hub The hub's identity
+	 * @return The circuit breaker's state
+	 */
+	public State getState(long hub) {
+		Circuit c = circuits.get(hub);
+		if (c == null) {
+			return State.CLOSED;
+		}
+
+		synchronized (c) {
+			return c.state;
+		}
+	}
+
+	/**
+	 * Closes all the circuits
+	 */
+	public void reset() {
+		circuits.clear();
+	}
+
+	/**
+	 * Returns the randomized backoff period after the given number of extra
+	 * failures ("equal jitter": half fixed, half random)
+	 */
+	private long backoff(int attempt) {
+		long period = maxBackoff;
+		if (attempt < 62 && (baseBackoff << attempt) >>> attempt == baseBackoff) {
+			period = Math.min(baseBackoff << attempt, maxBackoff);
+		}
+		long half = period >>> 1;
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+}
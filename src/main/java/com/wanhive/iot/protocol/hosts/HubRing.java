@@ -0,0 +1,157 @@
+/*
+ * HubRing.java
+ * 
+ * Local model of the overlay network
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consistent-hash ring of the hubs which predicts the root hub of an identity
+ * without a FINDROOT round trip. The hubs sit on an identifier circle of 2^bits
+ * positions at their identities (modulo the circle's size). The root of an
+ * identity is predicted to be the first hub clockwise from the identity's
+ * position (its successor). The prediction is only a hint: the overlay network
+ * remains the authority, and the counters keep track of how often the hint was
+ * right. Instances are immutable apart from the counters and thread safe.
+ * 
+ * @author amit
+ * 
+ */
+public class HubRing {
+	private static final String BAD_ARGUMENT = "Invalid argument";
+	/**
+	 * Positions of the hubs on the circle in ascending order
+	 */
+	private final long[] positions;
+	/**
+	 * The hubs in the order of their positions
+	 */
+	private final long[] hubs;
+	private final long mask;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param hubs The identities of the hubs
+	 * @param bits The key length of the overlay network in bits [1, 63]
+	 */
+	public HubRing(long[] hubs, int bits) {
+		if (hubs == null || hubs.length == 0 || bits < 1 || bits > 63) {
+			throw new IllegalArgumentException(BAD_ARGUMENT);
+		}
+
+		this.mask = (1L << bits) - 1;
+		Integer[] order = new Integer[hubs.length];
+		for (int i = 0; i < hubs.length; ++i) {
+			order[i] = i;
+		}
+		// By position, then by identity: the lowest identity owns a position
+		Arrays.sort(order, (x, y) -> {
+			int cmp = Long.compare(hubs[x] & mask, hubs[y] & mask);
+			return (cmp != 0) ? cmp : Long.compare(hubs[x], hubs[y]);
+		});
+
+		int count = 0;
+		long[] p = new long[hubs.length];
+		long[] h = new long[hubs.length];
+		for (int i : order) {
+			long position = hubs[i] & mask;
+			if (count == 0 || position != p[count - 1]) {
+				p[count] = position;
+				h[count] = hubs[i];
+				count++;
+			}
+		}
+		this.positions = Arrays.copyOf(p, count);
+		this.hubs = Arrays.copyOf(h, count);
+	}
+
+	/**
+	 * Builds a ring from all the hubs in a hosts database
+	 * 
+	 * @param hosts The hosts database
+	 * @param bits  The key length of the overlay network in bits [1, 63]
+	 * @return A new ring
+	 */
+	public static HubRing of(Hosts hosts, int bits) {
+		return new HubRing(hosts.list(HostTypes.HUB.getType(), Integer.MAX_VALUE), bits);
+	}
+
+	/**
+	 * Predicts the root hub of an identity
+	 * 
+	 * @param uid The identity
+	 * @return The identity of the predicted root hub
+	 */
+	public long predict(long uid) {
+		int i = Arrays.binarySearch(positions, uid & mask);
+		if (i < 0) {
+			i = -(i + 1);
+		}
+		return hubs[(i == hubs.length) ? 0 : i];
+	}
+
+	/**
+	 * Records whether a prediction was confirmed by the overlay network
+	 * 
+	 * @param correct true if the prediction was right, false otherwise
+	 */
+	public void record(boolean correct) {
+		if (correct) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the number of confirmed predictions
+	 * 
+	 * @return The number of correct predictions
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of predictions corrected by the overlay network
+	 * 
+	 * @return The number of wrong predictions
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of positions occupied on the ring
+	 * 
+	 * @return The number of hubs on the ring
+	 */
+	public int size() {
+		return hubs.length;
+	}
+}
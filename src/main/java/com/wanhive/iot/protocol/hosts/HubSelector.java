@@ -0,0 +1,214 @@
+/*
+ * HubSelector.java
+ * 
+ * Latency-aware selection of the hubs
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.wanhive.iot.protocol.configuration.ObjectSerializer;
+
+/**
+ * Ranks the hubs by their observed connection latency and failures. The
+ * selector keeps an exponentially weighted moving average of the connection
+ * time and the number of consecutive failures of every hub. The candidates are
+ * ordered by repeated power-of-two-choices: two random candidates are compared
+ * and the better one goes next. The nearby healthy hubs are preferred while the
+ * load still spreads over all of them. The statistics can be stored and loaded
+ * across restarts. All the operations are thread safe.
+ * 
+ * @author amit
+ * 
+ */
+public class HubSelector {
+	/**
+	 * Weight of a new sample in the moving average
+	 */
+	private static final double ALPHA = 0.2;
+	/**
+	 * Cap on the exponential failure penalty
+	 */
+	private static final int MAX_PENALTY = 16;
+	private final ConcurrentHashMap<Long, Stats> stats = new ConcurrentHashMap<Long, Stats>();
+
+	/**
+	 * The statistics of a hub
+	 */
+	private static final class Stats implements Serializable {
+		private static final long serialVersionUID = 1L;
+		/**
+		 * Smoothed connection time in milliseconds, negative if unknown
+		 */
+		double latency = -1;
+		/**
+		 * Number of consecutive failures
+		 */
+		int failures;
+	}
+
+	/**
+	 * Records a successful connection
+	 * 
+	 * @param hub     The hub's identity
+	 * @param latency The connection time in nanoseconds
+	 */
+	public void recordSuccess(long hub, long latency) {
+		double sample = latency / 1000000.0;
+		Stats s = stats.computeIfAbsent(hub, k -> new Stats());
+		synchronized (s) {
+			s.latency = (s.latency < 0) ? sample : (s.latency + ALPHA * (sample - s.latency));
+			s.failures = 0;
+		}
+	}
+
+	/**
+	 * Records a failed connection
+	 * 
+	 * @param hub The hub's identity
+	 */
+	public void recordFailure(long hub) {
+		Stats s = stats.computeIfAbsent(hub, k -> new Stats());
+		synchronized (s) {
+			s.failures++;
+		}
+	}
+
+	/**
+	 * Returns the score of a hub, lower is better. The smoothed connection time
+	 * is doubled for every consecutive failure. A hub without a latency estimate
+	 * is scored with the given default latency.
+	 * 
+	 * @param hub            The hub's identity
+	 * @param defaultLatency The latency of an unknown hub in milliseconds
+	 * @return The hub's score
+	 */
+	public double score(long hub, double defaultLatency) {
+		Stats s = stats.get(hub);
+		if (s == null) {
+			return defaultLatency + 1;
+		}
+
+		synchronized (s) {
+			double latency = (s.latency < 0) ? defaultLatency : s.latency;
+			return (latency + 1) * (1 << Math.min(s.failures, MAX_PENALTY));
+		}
+	}
+
+	/**
+	 * Orders the hubs for connection attempts. The hubs without a history are
+	 * scored with the average latency of the known hubs, so that they are tried
+	 * now and then.
+	 * 
+	 * @param hubs The candidate hubs
+	 * @return A new array containing the hubs in the preferred order
+	 */
+	public long[] order(long[] hubs) {
+		final int n = hubs.length;
+		double total = 0;
+		int known = 0;
+		double[] scores = new double[n];
+		for (int i = 0; i < n; ++i) {
+			Stats s = stats.get(hubs[i]);
+			if (s != null) {
+				synchronized (s) {
+					if (s.latency >= 0) {
+						total += s.latency;
+						known++;
+					}
+				}
+			}
+		}
+
+		double average = (known > 0) ? (total / known) : 0;
+		long[] result = hubs.clone();
+		for (int i = 0; i < n; ++i) {
+			scores[i] = score(result[i], average);
+		}
+
+		// Repeated power-of-two-choices over the remaining candidates
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+		for (int i = 0; i < n - 1; ++i) {
+			int a = i + rand.nextInt(n - i);
+			int b = i + rand.nextInt(n - i);
+			int best = (scores[a] <= scores[b]) ? a : b;
+			swap(result, scores, i, best);
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the statistics of all the hubs
+	 */
+	public void clear() {
+		stats.clear();
+	}
+
+	/**
+	 * Writes the statistics to the file system
+	 * 
+	 * @param pathname The pathname of the file
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public void store(String pathname) throws FileNotFoundException, IOException {
+		ConcurrentHashMap<Long, Stats> copy = new ConcurrentHashMap<Long, Stats>();
+		for (Map.Entry<Long, Stats> entry : stats.entrySet()) {
+			Stats s = new Stats();
+			synchronized (entry.getValue()) {
+				s.latency = entry.getValue().latency;
+				s.failures = entry.getValue().failures;
+			}
+			copy.put(entry.getKey(), s);
+		}
+		ObjectSerializer.store(pathname, copy);
+	}
+
+	/**
+	 * Reads the statistics from the file system, replaces the current statistics
+	 * 
+	 * @param pathname The pathname of the file
+	 * @throws FileNotFoundException
+	 * @throws ClassNotFoundException
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public void load(String pathname) throws FileNotFoundException, ClassNotFoundException, IOException {
+		ConcurrentHashMap<Long, Stats> newStats = (ConcurrentHashMap<Long, Stats>) ObjectSerializer.load(pathname);
+		stats.clear();
+		stats.putAll(newStats);
+	}
+
+	private static void swap(long[] hubs, double[] scores, int i, int j) {
+		long hub = hubs[i];
+		hubs[i] = hubs[j];
+		hubs[j] = hub;
+		double score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * InMemoryHosts.java
+ * 
+ * In-memory hosts manager
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.wanhive.iot.protocol.bean.NameInfo;
+
+/**
+ * Hosts manager backed by an open-addressing hash table with primitive long
+ * keys. Lookups never lock and never allocate; they may run concurrently with
+ * the updates, which are serialized.
+ * 
+ * The NameInfo objects returned by {@link #get(long)} are shared and must not
+ * be modified.
+ * 
+ * @author amit
+ * 
+ */
+public class InMemoryHosts implements Hosts {
+	/**
+	 * Marks a removed record (keeps the probe sequences intact)
+	 */
+	private static final NameInfo REMOVED = new NameInfo();
+	private static final int MIN_CAPACITY = 16;
+	private volatile Table table;
+	/**
+	 * The identities grouped by host type (null if invalidated by an update)
+	 */
+	private volatile HostsIndex index;
+
+	/**
+	 * The hash table. A slot is empty while its value is null. The key of a slot
+	 * is written before its value is published and never changes afterwards.
+	 */
+	private static final class Table {
+		final long[] keys;
+		final AtomicReferenceArray<NameInfo> values;
+		final int mask;
+		/**
+		 * Number of occupied slots, including the removed records
+		 */
+		int used;
+		/**
+		 * Number of live records
+		 */
+		int size;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new AtomicReferenceArray<NameInfo>(capacity);
+			mask = capacity - 1;
+		}
+	}
+
+	/**
+	 * The default constructor
+	 */
+	public InMemoryHosts() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param expectedSize The expected number of hosts
+	 */
+	public InMemoryHosts(int expectedSize) {
+		table = new Table(capacityFor(expectedSize));
+	}
+
+	/**
+	 * Imports the hosts from a text file (same format as the one used by
+	 * {@link WanhiveHosts#importHosts(String)}).
+	 * 
+	 * @param pathname Pathname of the text file
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public synchronized void importHosts(String pathname) throws FileNotFoundException, IOException {
+		HostsParser.Handler handler = new HostsParser.Handler() {
+			@Override
+			public void visit(long uid, String host, String service, int type) {
+				insert(uid, host, service, type);
+			}
+
+			@Override
+			public void remove(long uid) {
+				InMemoryHosts.this.remove(uid);
+			}
+		};
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(pathname))) {
+			while (true) {
+				String line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+
+				HostsParser.parse(line, handler);
+			}
+		}
+	}
+
+	/**
+	 * Replaces all the hosts with the ones in a text file. The new table is built
+	 * aside and swapped in at once, so that a lookup sees either the old or the
+	 * new hosts, and the hosts missing from the file are gone. The file must list
+	 * all the hosts, a delta file is applied with {@link #importHosts(String)}.
+	 * 
+	 * @param pathname Pathname of the text file
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public void replaceHosts(String pathname) throws FileNotFoundException, IOException {
+		InMemoryHosts fresh = new InMemoryHosts();
+		fresh.importHosts(pathname);
+		synchronized (this) {
+			table = fresh.table;
+			index = null;
+		}
+	}
+
+	/**
+	 * Imports all the hosts from a hosts database
+	 * 
+	 * @param hosts The hosts database
+	 * @throws SQLException
+	 */
+	public synchronized void importHosts(WanhiveHosts hosts) throws SQLException {
+		hosts.forEach((uid, host, service, type) -> insert(uid, host, service, type));
+	}
+
+	/**
+	 * Returns the number of hosts
+	 * 
+	 * @return The number of hosts in the record
+	 */
+	public synchronized int size() {
+		return table.size;
+	}
+
+	@Override
+	public NameInfo get(long identity) {
+		final Table t = table;
+		int i = hash(identity) & t.mask;
+		while (true) {
+			NameInfo ni = t.values.get(i);
+			if (ni == null) {
+				break;
+			} else if (t.keys[i] == identity) {
+				if (ni == REMOVED) {
+					break;
+				} else {
+					return ni;
+				}
+			} else {
+				i = (i + 1) & t.mask;
+			}
+		}
+		throw new NoSuchElementException("Not found");
+	}
+
+	@Override
+	public synchronized void put(long identity, NameInfo ni) {
+		insert(identity, ni.getHost(), ni.getService(), ni.getType());
+	}
+
+	@Override
+	public synchronized void remove(long identity) {
+		final Table t = table;
+		int i = hash(identity) & t.mask;
+		while (true) {
+			NameInfo ni = t.values.get(i);
+			if (ni == null) {
+				return;
+			} else if (t.keys[i] == identity) {
+				if (ni != REMOVED) {
+					t.values.set(i, REMOVED);
+					t.size--;
+					index = null;
+				}
+				return;
+			} else {
+				i = (i + 1) & t.mask;
+			}
+		}
+	}
+
+	@Override
+	public long[] list(int type, int limit) {
+		HostsIndex idx = index;
+		if (idx == null) {
+			idx = buildIndex();
+		}
+		return idx.sample(type, limit);
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+	/**
+	 * Inserts or replaces a record, the caller must hold the lock
+	 */
+	private void insert(long identity, String host, String service, int type) {
+		NameInfo ni = new NameInfo();
+		ni.setHost(host);
+		ni.setService(service);
+		ni.setType(type);
+		index = null;
+
+		Table t = table;
+		if ((t.used + 1) > (t.keys.length >>> 1)) {
+			t = rehash(t, capacityFor(t.size + 1));
+		}
+
+		int i = hash(identity) & t.mask;
+		while (true) {
+			NameInfo current = t.values.get(i);
+			if (current == null) {
+				t.keys[i] = identity;
+				t.values.set(i, ni);
+				t.used++;
+				t.size++;
+				return;
+			} else if (t.keys[i] == identity) {
+				t.values.set(i, ni);
+				if (current == REMOVED) {
+					t.size++;
+				}
+				return;
+			} else {
+				i = (i + 1) & t.mask;
+			}
+		}
+	}
+
+	/**
+	 * Scans the table into a new index
+	 */
+	private synchronized HostsIndex buildIndex() {
+		HostsIndex idx = index;
+		if (idx == null) {
+			final Table t = table;
+			HostsIndex.Builder builder = new HostsIndex.Builder();
+			for (int i = 0; i < t.keys.length; ++i) {
+				NameInfo ni = t.values.get(i);
+				if (ni != null && ni != REMOVED) {
+					builder.add(t.keys[i], ni.getType());
+				}
+			}
+			index = idx = builder.build();
+		}
+		return idx;
+	}
+
+	/**
+	 * Copies the live records into a new table and publishes it
+	 */
+	private Table rehash(Table old, int capacity) {
+		Table t = new Table(capacity);
+		for (int i = 0; i < old.keys.length; ++i) {
+			NameInfo ni = old.values.get(i);
+			if (ni != null && ni != REMOVED) {
+				int j = hash(old.keys[i]) & t.mask;
+				while (t.values.get(j) != null) {
+					j = (j + 1) & t.mask;
+				}
+				t.keys[j] = old.keys[i];
+				t.values.lazySet(j, ni);
+				t.used++;
+				t.size++;
+			}
+		}
+		table = t;
+		return t;
+	}
+
+	/**
+	 * Returns a power of two capacity which keeps the load factor below 0.5
+	 */
+	private static int capacityFor(int size) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < (1 << 30) && (capacity >>> 2) < size) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(long identity) {
+		long h = identity * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
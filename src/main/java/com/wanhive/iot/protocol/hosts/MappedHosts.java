@@ -0,0 +1,198 @@
+/*
+ * MappedHosts.java
+ * 
+ * Read-only hosts manager on a memory-mapped snapshot
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.wanhive.iot.protocol.hosts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import com.wanhive.iot.protocol.bean.NameInfo;
+
+/**
+ * Read-only hosts manager which serves the lookups directly from a
+ * memory-mapped binary snapshot created by
+ * {@link WanhiveHosts#exportSnapshot(String)}. Opening a snapshot costs a
+ * header check, the records stay on disk (in the page cache) and only the
+ * decoded strings are kept on the heap. Lookups are thread safe.
+ * 
+ * @author amit
+ *
+ */
+public class MappedHosts implements Hosts {
+	private static final String BAD_FORMAT = "Invalid hosts snapshot";
+	private static final String READ_ONLY = "Read-only hosts";
+	private final ByteBuffer buffer;
+	private final int count;
+	private final int recordsOffset;
+	private final int stringOffsets;
+	private final int stringData;
+	/**
+	 * Decoded strings, filled on demand
+	 */
+	private final String[] strings;
+	/**
+	 * The identities grouped by host type, built on demand
+	 */
+	private volatile HostsIndex index;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param pathname Pathname of the snapshot file
+	 * @throws IOException
+	 */
+	public MappedHosts(String pathname) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(pathname), StandardOpenOption.READ)) {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer = map;
+		}
+
+		if (buffer.capacity() < HostsSnapshot.HEADER_SIZE || buffer.getInt(0) != HostsSnapshot.MAGIC
+				|| buffer.getInt(4) != HostsSnapshot.VERSION) {
+			throw new IOException(BAD_FORMAT);
+		}
+
+		count = buffer.getInt(8);
+		int stringCount = buffer.getInt(12);
+		if (count < 0 || stringCount < 0) {
+			throw new IOException(BAD_FORMAT);
+		}
+
+		long records = HostsSnapshot.HEADER_SIZE + 8L * count;
+		long offsets = records + (long) HostsSnapshot.RECORD_SIZE * count;
+		long data = offsets + 4L * (stringCount + 1);
+		if (data > buffer.capacity() || data + buffer.getInt((int) data - 4) > buffer.capacity()) {
+			throw new IOException(BAD_FORMAT);
+		}
+
+		recordsOffset = (int) records;
+		stringOffsets = (int) offsets;
+		stringData = (int) data;
+		strings = new String[stringCount];
+	}
+
+	/**
+	 * Returns the number of hosts
+	 * 
+	 * @return The number of hosts in the snapshot
+	 */
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public NameInfo get(long identity) {
+		int i = indexOf(identity);
+		if (i < 0) {
+			throw new NoSuchElementException("Not found");
+		}
+
+		int record = recordsOffset + i * HostsSnapshot.RECORD_SIZE;
+		NameInfo ni = new NameInfo();
+		ni.setHost(string(buffer.getInt(record)));
+		ni.setService(string(buffer.getInt(record + 4)));
+		ni.setType(buffer.getInt(record + 8));
+		return ni;
+	}
+
+	@Override
+	public void put(long identity, NameInfo ni) {
+		throw new UnsupportedOperationException(READ_ONLY);
+	}
+
+	@Override
+	public void remove(long identity) {
+		throw new UnsupportedOperationException(READ_ONLY);
+	}
+
+	@Override
+	public long[] list(int type, int limit) {
+		HostsIndex idx = index;
+		if (idx == null) {
+			synchronized (this) {
+				idx = index;
+				if (idx == null) {
+					HostsIndex.Builder builder = new HostsIndex.Builder();
+					for (int i = 0; i < count; ++i) {
+						builder.add(uid(i), buffer.getInt(recordsOffset + i * HostsSnapshot.RECORD_SIZE + 8));
+					}
+					index = idx = builder.build();
+				}
+			}
+		}
+		return idx.sample(type, limit);
+	}
+
+	/**
+	 * The mapping is released when this object is garbage collected
+	 */
+	@Override
+	public void close() {
+
+	}
+
+	private long uid(int i) {
+		return buffer.getLong(HostsSnapshot.HEADER_SIZE + (i << 3));
+	}
+
+	/**
+	 * Binary search over the sorted identities
+	 */
+	private int indexOf(long identity) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long value = uid(mid);
+			if (value < identity) {
+				low = mid + 1;
+			} else if (value > identity) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private String string(int index) {
+		String s = strings[index];
+		if (s == null) {
+			int start = buffer.getInt(stringOffsets + (index << 2));
+			int end = buffer.getInt(stringOffsets + ((index + 1) << 2));
+			byte[] bytes = new byte[end - start];
+			ByteBuffer view = buffer.duplicate();
+			view.position(stringData + start);
+			view.get(bytes);
+			s = new String(bytes, HostsSnapshot.UTF8);
+			strings[index] = s;
+		}
+		return s;
+	}
+}
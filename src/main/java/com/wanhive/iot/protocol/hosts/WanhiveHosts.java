@@ -30,18 +30,40 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 import com.wanhive.iot.protocol.bean.NameInfo;
 
 /**
- * Reference implementation of the Wanhive hosts manager.
+ * Reference implementation of the Wanhive hosts manager. All the operations are
+ * thread safe. By default a single connection serves all the requests; in the
+ * concurrent mode (see {@link #WanhiveHosts(String, int)}) the database runs in
+ * the WAL journal mode, lookups are spread over a pool of read connections and
+ * the updates are serialized through the single writer connection.
+ * 
+ * {@link #list(int, int)} samples an in-memory index of the identities which is
+ * rebuilt after an update made through this object; changes made to the
+ * database file by another process are not visible to it.
  * 
  * @author amit
  *
@@ -51,11 +73,196 @@ public class WanhiveHosts implements Hosts {
 	 * The pathname of in-memory database
 	 */
 	public static final String IN_MEMORY = ":memory:";
-	private final Connection conn;
+	private static final String GET_QUERY = "SELECT name, service, type FROM hosts WHERE uid=?";
+	/**
+	 * Number of identities looked up by a single query in {@link #getAll(long[])}
+	 */
+	private static final int GET_ALL_BATCH = 64;
+	private static final String GET_ALL_QUERY = "SELECT uid, name, service, type FROM hosts WHERE uid IN (?"
+			+ repeat(",?", GET_ALL_BATCH - 1) + ")";
+	private static final String PUT_QUERY = "INSERT INTO hosts (uid, name, service, type) VALUES (?,?,?,?)";
+	private static final String REMOVE_QUERY = "DELETE FROM hosts WHERE uid=?";
+	private static final String INDEX_QUERY = "SELECT uid, type FROM hosts";
+	private static final String IMPORT_QUERY = "INSERT OR REPLACE INTO hosts (uid, name, service, type) VALUES (?,?,?,?)";
+	private static final String BAD_READERS = "Concurrent mode requires a database file";
+	private static final String GET_REVISION_QUERY = "SELECT value FROM meta WHERE name='revision'";
+	private static final String SET_REVISION_QUERY = "INSERT OR REPLACE INTO meta (name, value) VALUES ('revision', ?)";
+	private static final String BAD_REVISION = "Revision mismatch";
+	private static final String BAD_PARALLELISM = "Invalid parallelism";
+	private static final String BAD_STATE = "Hosts database closed";
+	/**
+	 * Number of lines parsed and inserted together during an import
+	 */
+	private static final int IMPORT_CHUNK = 4096;
+	/**
+	 * Number of records inserted by a single statement during an import
+	 */
+	private static final int IMPORT_ROWS = 64;
+	private static final String IMPORT_MULTI_QUERY = IMPORT_QUERY + repeat(",(?,?,?,?)", IMPORT_ROWS - 1);
+	/**
+	 * Page cache size during an import (negative value is in KiB)
+	 */
+	private static final int IMPORT_CACHE_SIZE = -65536;
+	/**
+	 * How often a lookup waiting for a read connection checks for a close (in
+	 * milliseconds)
+	 */
+	private static final long ACQUIRE_POLL = 100;
+	/**
+	 * The connection which performs all the updates
+	 */
+	private final Session master;
+	/**
+	 * The connections available for lookups (contains only the writer in the
+	 * default mode)
+	 */
+	private final BlockingQueue<Session> readers;
+	/**
+	 * The identities grouped by host type (null if invalidated by an update)
+	 */
+	private volatile HostsIndex index;
+	/**
+	 * Set by {@link #close()}, no connection is handed out afterwards
+	 */
+	private volatile boolean closed;
 	static {
 		init();
 	}
 
+	/**
+	 * A chunk of parsed hosts records and removals (the removals have a null
+	 * host name)
+	 */
+	private static final class Chunk implements HostsParser.Handler {
+		final long[] uids;
+		final String[] hosts;
+		final String[] services;
+		final int[] types;
+		int size;
+		int removals;
+
+		Chunk(int capacity) {
+			uids = new long[capacity];
+			hosts = new String[capacity];
+			services = new String[capacity];
+			types = new int[capacity];
+		}
+
+		@Override
+		public void visit(long uid, String host, String service, int type) {
+			uids[size] = uid;
+			hosts[size] = host;
+			services[size] = service;
+			types[size] = type;
+			size++;
+		}
+
+		@Override
+		public void remove(long uid) {
+			uids[size] = uid;
+			hosts[size] = null;
+			size++;
+			removals++;
+		}
+
+		/**
+		 * Applies the chunk. Without removals the records are inserted
+		 * {@link #IMPORT_ROWS} at a time through the multi-row statement, otherwise
+		 * the updates are applied one by one in their original order.
+		 */
+		int apply(Session session) throws SQLException {
+			if (removals > 0) {
+				PreparedStatement put = session.prepare(IMPORT_QUERY);
+				PreparedStatement remove = session.prepare(REMOVE_QUERY);
+				for (int i = 0; i < size; ++i) {
+					if (hosts[i] == null) {
+						remove.setLong(1, uids[i]);
+						remove.executeUpdate();
+					} else {
+						put.setLong(1, uids[i]);
+						put.setString(2, hosts[i]);
+						put.setString(3, services[i]);
+						put.setInt(4, types[i]);
+						put.executeUpdate();
+					}
+				}
+				return size;
+			}
+
+			int i = 0;
+			if (size >= IMPORT_ROWS) {
+				PreparedStatement multi = session.prepare(IMPORT_MULTI_QUERY);
+				for (; i + IMPORT_ROWS <= size; i += IMPORT_ROWS) {
+					for (int j = 0, p = 1; j < IMPORT_ROWS; ++j, p += 4) {
+						multi.setLong(p, uids[i + j]);
+						multi.setString(p + 1, hosts[i + j]);
+						multi.setString(p + 2, services[i + j]);
+						multi.setInt(p + 3, types[i + j]);
+					}
+					multi.addBatch();
+				}
+				multi.executeBatch();
+			}
+
+			if (i < size) {
+				PreparedStatement single = session.prepare(IMPORT_QUERY);
+				for (; i < size; ++i) {
+					single.setLong(1, uids[i]);
+					single.setString(2, hosts[i]);
+					single.setString(3, services[i]);
+					single.setInt(4, types[i]);
+					single.addBatch();
+				}
+				single.executeBatch();
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * A database connection and its prepared statements. All the access must be
+	 * synchronized on the Session object.
+	 */
+	private static final class Session implements AutoCloseable {
+		final Connection conn;
+		private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+		Session(Connection conn) {
+			this.conn = conn;
+		}
+
+		/**
+		 * Returns a cached prepared statement, prepares it on the first use
+		 */
+		PreparedStatement prepare(String query) throws SQLException {
+			PreparedStatement ps = statements.get(query);
+			if (ps == null) {
+				ps = conn.prepareStatement(query);
+				statements.put(query, ps);
+			}
+			ps.clearParameters();
+			return ps;
+		}
+
+		@Override
+		public void close() {
+			for (PreparedStatement ps : statements.values()) {
+				try {
+					ps.close();
+				} catch (Exception e) {
+
+				}
+			}
+			statements.clear();
+
+			try {
+				conn.close();
+			} catch (Exception e) {
+
+			}
+		}
+	}
+
 	/**
 	 * Loads the SQLite3 database driver
 	 */
@@ -72,30 +279,65 @@ public class WanhiveHosts implements Hosts {
 	 * 
 	 * @throws SQLException
 	 */
-	private Connection initDatabase(String db) throws SQLException {
+	private Connection initDatabase(String db, boolean wal) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = DriverManager.getConnection("jdbc:sqlite:" + db);
 
+			if (wal) {
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute("PRAGMA journal_mode=WAL");
+					stmt.execute("PRAGMA synchronous=NORMAL");
+				}
+			}
+
 			String query = "CREATE TABLE IF NOT EXISTS hosts (uid INTEGER NOT NULL UNIQUE ON CONFLICT REPLACE, name TEXT NOT NULL DEFAULT '127.0.0.1', service TEXT NOT NULL DEFAULT '9000', type INTEGER NOT NULL DEFAULT 0)";
 			try (PreparedStatement ps = conn.prepareStatement(query)) {
 				ps.execute();
 			}
 
+			query = "CREATE TABLE IF NOT EXISTS meta (name TEXT NOT NULL PRIMARY KEY, value INTEGER NOT NULL)";
+			try (PreparedStatement ps = conn.prepareStatement(query)) {
+				ps.execute();
+			}
+
 			return conn;
 		} catch (SQLException e) {
-			try {
-				if (conn != null) {
-					conn.close();
-					conn = null;
-				}
-			} catch (Exception e2) {
+			close(conn);
+			throw e;
+		}
+	}
 
+	/**
+	 * Opens a read connection to the database
+	 * 
+	 * @throws SQLException
+	 */
+	private Connection openReader(String db) throws SQLException {
+		Connection conn = null;
+		try {
+			conn = DriverManager.getConnection("jdbc:sqlite:" + db);
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("PRAGMA query_only=1");
+				stmt.execute("PRAGMA busy_timeout=5000");
 			}
+			return conn;
+		} catch (SQLException e) {
+			close(conn);
 			throw e;
 		}
 	}
 
+	private static void close(Connection conn) {
+		try {
+			if (conn != null) {
+				conn.close();
+			}
+		} catch (Exception e) {
+
+		}
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -103,7 +345,38 @@ public class WanhiveHosts implements Hosts {
 	 * @throws SQLException
 	 */
 	public WanhiveHosts(String db) throws SQLException {
-		conn = initDatabase(db);
+		master = new Session(initDatabase(db, false));
+		readers = new ArrayBlockingQueue<Session>(1);
+		readers.add(master);
+	}
+
+	/**
+	 * Constructor for the concurrent mode. Enables the WAL journal mode and opens
+	 * the given number of read connections in addition to the writer connection.
+	 * 
+	 * @param db      Pathname of the SQLite3 database file (the in-memory
+	 *                database is not supported)
+	 * @param readers Number of read connections, set to 0 for the default mode
+	 * @throws SQLException
+	 */
+	public WanhiveHosts(String db, int readers) throws SQLException {
+		if (readers < 0 || (readers > 0 && (db == null || db.isEmpty() || IN_MEMORY.equals(db)))) {
+			throw new IllegalArgumentException(BAD_READERS);
+		}
+
+		this.master = new Session(initDatabase(db, readers > 0));
+		this.readers = new ArrayBlockingQueue<Session>(Math.max(readers, 1));
+		try {
+			if (readers == 0) {
+				this.readers.add(master);
+			}
+			for (int i = 0; i < readers; ++i) {
+				this.readers.add(new Session(openReader(db)));
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
 	}
 
 	/**
@@ -115,43 +388,127 @@ public class WanhiveHosts implements Hosts {
 	 * @throws SQLException
 	 */
 	public void importHosts(String pathname) throws FileNotFoundException, IOException, SQLException {
-		String query = "INSERT INTO hosts (uid, name, service, type) VALUES (?,?,?,?)";
-		try (BufferedReader reader = new BufferedReader(new FileReader(pathname))) {
-			boolean commitFlag = conn.getAutoCommit();
-			try {
-				conn.setAutoCommit(false);
-				try (PreparedStatement ps = conn.prepareStatement(query)) {
-					while (true) {
-						String line = reader.readLine();
-						if (line == null) {
-							break;
-						}
+		importHosts(pathname, 1);
+	}
 
-						line = line.trim();
-						if (line.length() == 0 || line.startsWith("#")) {
-							continue;
-						}
+	/**
+	 * Bulk-imports the hosts from a text file to the database. The file is read
+	 * in chunks of lines which are parsed by the given number of threads and
+	 * inserted in the file order in batches, within a single transaction. An
+	 * existing record with the same identity is replaced.
+	 * 
+	 * The revision given by the file's header is stored along with the data, a
+	 * file carrying the current revision is not imported again. A delta file
+	 * (see {@link HostsParser}) is applied only on top of its base revision.
+	 * 
+	 * @param pathname    Pathname of the text file
+	 * @param parallelism The number of parser threads, 1 to parse on the calling
+	 *                    thread
+	 * @return The number of imported records and removals, 0 if the file's
+	 *         revision is already in the database
+	 * @throws IllegalStateException if a delta file does not apply on the current
+	 *                               revision
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public int importHosts(String pathname, int parallelism) throws FileNotFoundException, IOException, SQLException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(BAD_PARALLELISM);
+		}
 
-						String[] data = line.split("\t");
-						if (data == null || data.length < 3) {
-							continue;
-						}
+		final long start = System.nanoTime();
+		final HostsParser.Header header = HostsParser.readHeader(pathname);
+		int rows = 0;
+		ExecutorService parsers = null;
+		try (BufferedReader reader = new BufferedReader(new FileReader(pathname), 1 << 16)) {
+			if (parallelism > 1) {
+				parsers = Executors.newFixedThreadPool(parallelism, r -> {
+					Thread t = new Thread(r, "WanhiveHosts");
+					t.setDaemon(true);
+					return t;
+				});
+			}
 
-						ps.clearParameters();
-						ps.setLong(1, Long.parseLong(data[0]));
-						ps.setString(2, data[1]);
-						ps.setString(3, data[2]);
-						if (data.length == 4) {
-							ps.setInt(4, Integer.parseInt(data[3]));
+			synchronized (master) {
+				long revision = getRevision();
+				if (header.revision >= 0 && header.revision == revision) {
+					Logger.getGlobal().info("Hosts revision " + revision + " is up to date");
+					return 0;
+				} else if (header.isDelta() && header.base != revision) {
+					throw new IllegalStateException(BAD_REVISION);
+				}
+
+				Connection conn = master.conn;
+				boolean commitFlag = conn.getAutoCommit();
+				int synchronous = pragma(conn, "synchronous");
+				int cacheSize = pragma(conn, "cache_size");
+				try {
+					try (Statement stmt = conn.createStatement()) {
+						stmt.execute("PRAGMA synchronous=OFF");
+						stmt.execute("PRAGMA cache_size=" + IMPORT_CACHE_SIZE);
+					}
+
+					conn.setAutoCommit(false);
+					ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+					while (true) {
+						final List<String> lines = readChunk(reader);
+						if (lines == null) {
+							break;
+						} else if (parsers == null) {
+							rows += parse(lines).apply(master);
 						} else {
-							ps.setInt(4, 0);
+							pending.add(parsers.submit(() -> parse(lines)));
+							if (pending.size() >= (parallelism << 1)) {
+								rows += await(pending.poll()).apply(master);
+							}
 						}
+					}
+
+					while (!pending.isEmpty()) {
+						rows += await(pending.poll()).apply(master);
+					}
+
+					if (header.revision >= 0) {
+						PreparedStatement ps = master.prepare(SET_REVISION_QUERY);
+						ps.setLong(1, header.revision);
 						ps.executeUpdate();
 					}
+					conn.commit();
+				} catch (IOException | SQLException | RuntimeException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					index = null;
+					conn.setAutoCommit(commitFlag);
+					try (Statement stmt = conn.createStatement()) {
+						stmt.execute("PRAGMA synchronous=" + synchronous);
+						stmt.execute("PRAGMA cache_size=" + cacheSize);
+					}
 				}
-				conn.commit();
-			} finally {
-				conn.setAutoCommit(commitFlag);
+			}
+		} finally {
+			if (parsers != null) {
+				parsers.shutdownNow();
+			}
+		}
+
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+		Logger.getGlobal().info("Imported " + rows + " hosts (revision " + header.revision + ") in "
+				+ (elapsed / 1000000) + " ms (" + (rows * 1000000000L / elapsed) + " rows/s)");
+		return rows;
+	}
+
+	/**
+	 * Returns the revision of the hosts data
+	 * 
+	 * @return The revision of the last imported hosts file, -1 if unknown
+	 * @throws SQLException
+	 */
+	public long getRevision() throws SQLException {
+		synchronized (master) {
+			try (ResultSet rs = master.prepare(GET_REVISION_QUERY).executeQuery()) {
+				return rs.next() ? rs.getLong(1) : -1;
 			}
 		}
 	}
@@ -167,8 +524,14 @@ public class WanhiveHosts implements Hosts {
 	public void exportHosts(String pathname, int version) throws IOException, SQLException {
 		try (BufferedWriter writer = new BufferedWriter(new FileWriter(pathname))) {
 			String query = "SELECT uid, name, service, type FROM hosts ORDER BY uid ASC";
-			try (PreparedStatement ps = conn.prepareStatement(query)) {
-				try (ResultSet rs = ps.executeQuery()) {
+			synchronized (master) {
+				long revision = getRevision();
+				if (revision >= 0) {
+					writer.write("# Revision: " + revision);
+					writer.write(System.lineSeparator());
+				}
+
+				try (ResultSet rs = master.prepare(query).executeQuery()) {
 					while (rs.next()) {
 						writer.write(rs.getString(1));
 						writer.write("\t");
@@ -197,87 +560,278 @@ public class WanhiveHosts implements Hosts {
 		exportHosts(pathname, 0);
 	}
 
+	/**
+	 * Exports the hosts database to a binary snapshot which can be opened with
+	 * {@link MappedHosts}
+	 * 
+	 * @param pathname Pathname of the snapshot file
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public void exportSnapshot(String pathname) throws IOException, SQLException {
+		HostsSnapshot snapshot = new HostsSnapshot();
+		forEach(snapshot);
+		snapshot.write(pathname);
+	}
+
+	/**
+	 * Enumerates all the hosts records in the ascending order of identities
+	 * 
+	 * @param visitor The callback which receives the records
+	 * @throws SQLException
+	 */
+	void forEach(HostsVisitor visitor) throws SQLException {
+		String query = "SELECT uid, name, service, type FROM hosts ORDER BY uid ASC";
+		synchronized (master) {
+			try (ResultSet rs = master.prepare(query).executeQuery()) {
+				while (rs.next()) {
+					visitor.visit(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4));
+				}
+			}
+		}
+	}
+
 	@Override
 	public NameInfo get(long identity) {
-		String query = "SELECT name, service, type FROM hosts WHERE uid=?";
-		try (PreparedStatement ps = conn.prepareStatement(query)) {
-			ps.setLong(1, identity);
-
-			try (ResultSet rs = ps.executeQuery()) {
-				if (rs.next()) {
-					NameInfo ni = new NameInfo();
-					ni.setHost(rs.getString(1));
-					ni.setService(rs.getString(2));
-					ni.setType(rs.getInt(3));
-					return ni;
-				} else {
-					throw new NoSuchElementException("Not found");
+		Session session = acquire();
+		try {
+			synchronized (session) {
+				PreparedStatement ps = session.prepare(GET_QUERY);
+				ps.setLong(1, identity);
+
+				try (ResultSet rs = ps.executeQuery()) {
+					if (rs.next()) {
+						NameInfo ni = new NameInfo();
+						ni.setHost(rs.getString(1));
+						ni.setService(rs.getString(2));
+						ni.setType(rs.getInt(3));
+						return ni;
+					} else {
+						throw new NoSuchElementException("Not found");
+					}
 				}
 			}
-		} catch (Exception e) {
+		} catch (SQLException e) {
 			throw new IllegalStateException(e.getMessage());
+		} finally {
+			release(session);
 		}
 	}
 
+	/**
+	 * Returns the network addresses of many Wanhive hosts, up to
+	 * {@value #GET_ALL_BATCH} hosts per query
+	 */
 	@Override
-	public void put(long identity, NameInfo ni) {
-		String query = "INSERT INTO hosts (uid, name, service, type) VALUES (?,?,?,?)";
-
-		try (PreparedStatement ps = conn.prepareStatement(query)) {
-			ps.setLong(1, identity);
-			ps.setString(2, ni.getHost());
-			ps.setString(3, ni.getService());
-			ps.setInt(4, ni.getType());
-			ps.executeUpdate();
-		} catch (Exception e) {
+	public NameInfo[] getAll(long[] identities) {
+		Map<Long, NameInfo> found = new HashMap<Long, NameInfo>();
+		Session session = acquire();
+		try {
+			synchronized (session) {
+				PreparedStatement ps = session.prepare(GET_ALL_QUERY);
+				for (int i = 0; i < identities.length; i += GET_ALL_BATCH) {
+					for (int j = 0; j < GET_ALL_BATCH; ++j) {
+						// Pad the last batch with a repeated identity
+						ps.setLong(j + 1, identities[Math.min(i + j, identities.length - 1)]);
+					}
+
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							NameInfo ni = new NameInfo();
+							ni.setHost(rs.getString(2));
+							ni.setService(rs.getString(3));
+							ni.setType(rs.getInt(4));
+							found.put(rs.getLong(1), ni);
+						}
+					}
+				}
+			}
+		} catch (SQLException e) {
 			throw new IllegalStateException(e.getMessage());
+		} finally {
+			release(session);
+		}
+
+		NameInfo[] result = new NameInfo[identities.length];
+		for (int i = 0; i < identities.length; ++i) {
+			result[i] = found.get(identities[i]);
+		}
+		return result;
+	}
+
+	@Override
+	public void put(long identity, NameInfo ni) {
+		synchronized (master) {
+			try {
+				PreparedStatement ps = master.prepare(PUT_QUERY);
+				ps.setLong(1, identity);
+				ps.setString(2, ni.getHost());
+				ps.setString(3, ni.getService());
+				ps.setInt(4, ni.getType());
+				ps.executeUpdate();
+				index = null;
+			} catch (Exception e) {
+				throw new IllegalStateException(e.getMessage());
+			}
 		}
 	}
 
 	@Override
 	public void remove(long identity) {
-		String query = "DELETE FROM hosts WHERE uid=?";
-		try (PreparedStatement ps = conn.prepareStatement(query)) {
-			ps.setLong(1, identity);
-			ps.executeUpdate();
-		} catch (Exception e) {
-			throw new IllegalStateException(e.getMessage());
+		synchronized (master) {
+			try {
+				PreparedStatement ps = master.prepare(REMOVE_QUERY);
+				ps.setLong(1, identity);
+				ps.executeUpdate();
+				index = null;
+			} catch (Exception e) {
+				throw new IllegalStateException(e.getMessage());
+			}
 		}
 	}
 
 	@Override
 	public long[] list(int type, int limit) {
-		String query = "SELECT uid FROM hosts WHERE type=? ORDER BY RANDOM() LIMIT ?";
-		try (PreparedStatement ps = conn.prepareStatement(query)) {
-			ps.setInt(1, type);
-			ps.setInt(2, ((limit >= 0) ? limit : 0));
-
-			try (ResultSet rs = ps.executeQuery()) {
-				long[] list = new long[limit];
-				int i = 0;
-				while (rs.next()) {
-					list[i++] = rs.getLong(1);
-				}
+		HostsIndex idx = index;
+		if (idx == null) {
+			idx = buildIndex();
+		}
+		return idx.sample(type, limit);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Session session;
+		while ((session = readers.poll()) != null) {
+			if (session != master) {
+				session.close();
+			}
+		}
+		synchronized (master) {
+			master.close();
+		}
+	}
+
+	private static String repeat(String s, int count) {
+		StringBuilder sb = new StringBuilder(s.length() * count);
+		for (int i = 0; i < count; ++i) {
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads the next chunk of lines, returns null at the end of the file
+	 */
+	private static List<String> readChunk(BufferedReader reader) throws IOException {
+		List<String> lines = new ArrayList<String>(IMPORT_CHUNK);
+		String line;
+		while (lines.size() < IMPORT_CHUNK && (line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		return lines.isEmpty() ? null : lines;
+	}
+
+	/**
+	 * Parses a chunk of lines
+	 */
+	private static Chunk parse(List<String> lines) {
+		Chunk chunk = new Chunk(lines.size());
+		for (String line : lines) {
+			HostsParser.parse(line, chunk);
+		}
+		return chunk;
+	}
 
-				if (i == limit) {
-					return list;
+	/**
+	 * Waits for a parser thread to finish its chunk
+	 */
+	private static Chunk await(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else {
+				throw new IOException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Returns the integer value of a pragma
+	 */
+	private static int pragma(Connection conn, String name) throws SQLException {
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Takes a connection from the pool of read connections
+	 */
+	private Session acquire() {
+		try {
+			while (!closed) {
+				Session session = readers.poll(ACQUIRE_POLL, TimeUnit.MILLISECONDS);
+				if (session == null) {
+					continue;
+				} else if (closed) {
+					release(session);
+					break;
 				} else {
-					return Arrays.copyOfRange(list, 0, i);
+					return session;
 				}
 			}
-		} catch (Exception e) {
+			throw new IllegalStateException(BAD_STATE);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			throw new IllegalStateException(e.getMessage());
 		}
 	}
 
-	@Override
-	public void close() {
-		try {
-			if (conn != null) {
-				conn.close();
+	/**
+	 * Returns a connection to the pool of read connections, closes it if the
+	 * database has been closed in the meantime
+	 */
+	private void release(Session session) {
+		if (!closed) {
+			readers.offer(session);
+			if (!closed || !readers.remove(session)) {
+				// Still open, or close() has taken it from the pool
+				return;
 			}
-		} catch (Exception e) {
+		}
+
+		if (session != master) {
+			session.close();
+		}
+	}
 
+	/**
+	 * Loads the identities of all the hosts into a new index
+	 */
+	private HostsIndex buildIndex() {
+		synchronized (master) {
+			HostsIndex idx = index;
+			if (idx != null) {
+				return idx;
+			}
+
+			HostsIndex.Builder builder = new HostsIndex.Builder();
+			try (ResultSet rs = master.prepare(INDEX_QUERY).executeQuery()) {
+				while (rs.next()) {
+					builder.add(rs.getLong(1), rs.getInt(2));
+				}
+			} catch (SQLException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+			index = idx = builder.build();
+			return idx;
 		}
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ * HostsBenchmark.java
+ * 
+ * Measures the concurrent lookup throughput of the hosts managers
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.wanhive.iot.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wanhive.iot.protocol.hosts.Hosts;
+import com.wanhive.iot.protocol.hosts.InMemoryHosts;
+import com.wanhive.iot.protocol.hosts.WanhiveHosts;
+
+/**
+ * Measures the lookup throughput of the hosts managers when many threads
+ * resolve random identities at the same time.
+ * 
+ * Usage: HostsBenchmark hosts-file [threads] [read connections] [seconds]
+ * 
+ * @author amit
+ * 
+ */
+public class HostsBenchmark {
+	/**
+	 * Returns the number of lookups per second
+	 */
+	private static long run(Hosts hosts, long[] ids, int threads, int seconds) throws InterruptedException {
+		final AtomicLong total = new AtomicLong();
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < threads; ++i) {
+			Thread t = new Thread(() -> {
+				ThreadLocalRandom rand = ThreadLocalRandom.current();
+				long count = 0;
+				while ((count & 255) != 0 || System.nanoTime() < deadline) {
+					try {
+						hosts.get(ids[rand.nextInt(ids.length)]);
+					} catch (NoSuchElementException e) {
+
+					}
+					++count;
+				}
+				total.addAndGet(count);
+			});
+			workers.add(t);
+			t.start();
+		}
+
+		for (Thread t : workers) {
+			t.join();
+		}
+		return total.get() / seconds;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		try {
+			String pathname = args[0];
+			int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+			int readers = args.length > 2 ? Integer.parseInt(args[2]) : threads;
+			int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+			File db = File.createTempFile("hosts", ".db");
+			db.deleteOnExit();
+			new File(db.getPath() + "-wal").deleteOnExit();
+			new File(db.getPath() + "-shm").deleteOnExit();
+
+			InMemoryHosts memory = new InMemoryHosts();
+			memory.importHosts(pathname);
+			long[] ids = memory.list(0, Integer.MAX_VALUE);
+			if (ids.length == 0) {
+				System.out.println("No hosts to look up");
+				return;
+			}
+
+			long serial;
+			try (WanhiveHosts hosts = new WanhiveHosts(db.getPath())) {
+				hosts.importHosts(pathname);
+				run(hosts, ids, threads, 1);
+				serial = run(hosts, ids, threads, seconds);
+			}
+
+			long concurrent;
+			try (WanhiveHosts hosts = new WanhiveHosts(db.getPath(), readers)) {
+				run(hosts, ids, threads, 1);
+				concurrent = run(hosts, ids, threads, seconds);
+			}
+
+			run(memory, ids, threads, 1);
+			long inMemory = run(memory, ids, threads, seconds);
+
+			System.out.println("Hosts: " + ids.length + ", threads: " + threads + ", read connections: " + readers);
+			System.out.println("Single connection:  " + serial + " lookups/s");
+			System.out.println("Concurrent (WAL):   " + concurrent + " lookups/s");
+			System.out.println("InMemoryHosts:      " + inMemory + " lookups/s");
+		} catch (Exception e) {
+			System.out.println("ERROR: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * SRPBenchmark.java
+ * 
+ * Measures the client-side cost of SRP-6a logins
+ * 
+ * This program is part of Wanhive IoT Platform.
+ * 
+ * Apache-2.0 License
+ * Copyright 2020 Wanhive Systems Private Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.wanhive.iot.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+
+import com.nimbusds.srp6.SRP6CryptoParams;
+import com.wanhive.iot.protocol.agreement.WHClientEvidenceRoutine;
+import com.wanhive.iot.protocol.agreement.WHSRP6ClientSession;
+import com.wanhive.iot.protocol.agreement.WHSRP6Group;
+import com.wanhive.iot.protocol.agreement.WHServerEvidenceRoutine;
+import com.wanhive.iot.protocol.agreement.WHXRoutine;
+
+/**
+ * Measures the per-login CPU time of the client-side SRP-6a computations (steps
+ * one and two) with and without the shared group precomputations.
+ * 
+ * Usage: SRPBenchmark [logins] [password hashing rounds]
+ * 
+ * @author amit
+ *
+ */
+public class SRPBenchmark {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final byte[] PASSWORD = "123456".getBytes(Charset.forName("UTF-8"));
+
+	/**
+	 * A session configured the way it was before the shared group existed
+	 */
+	private static WHSRP6ClientSession baselineSession(int rounds) {
+		WHSRP6ClientSession session = new WHSRP6ClientSession();
+		session.setXRoutine(new WHXRoutine(rounds));
+		session.setClientEvidenceRoutine(new WHClientEvidenceRoutine());
+		session.setServerEvidenceRoutine(new WHServerEvidenceRoutine());
+		return session;
+	}
+
+	/**
+	 * Returns the average CPU time of a single login in microseconds
+	 */
+	private static long run(int logins, int rounds, boolean shared, BigInteger s, BigInteger B) throws Exception {
+		long start = THREADS.getCurrentThreadCpuTime();
+		for (int i = 0; i < logins; ++i) {
+			WHSRP6ClientSession session;
+			SRP6CryptoParams config;
+			if (shared) {
+				session = WHSRP6ClientSession.getDefaultSession(rounds);
+				config = WHSRP6ClientSession.getDefaultConfig();
+			} else {
+				session = baselineSession(rounds);
+				config = SRP6CryptoParams.getInstance(2048, "SHA-512");
+			}
+			session.step1(config, Long.toString(65537 + i), PASSWORD);
+			session.step2(s, B);
+		}
+		return (THREADS.getCurrentThreadCpuTime() - start) / logins / 1000;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		try {
+			int logins = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+			int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+			WHSRP6Group group = WHSRP6Group.getDefault();
+			SecureRandom random = new SecureRandom();
+			BigInteger s = new BigInteger(64, random);
+			BigInteger B = new BigInteger(group.getConfig().N.bitLength() - 1, random).add(BigInteger.ONE);
+
+			// Warm up
+			run(logins, rounds, false, s, B);
+			run(logins, rounds, true, s, B);
+			long baseline = run(logins, rounds, false, s, B);
+			long shared = run(logins, rounds, true, s, B);
+
+			long start = System.nanoTime();
+			group.precompute(WHSRP6Group.DEFAULT_WINDOW);
+			long setup = (System.nanoTime() - start) / 1000000;
+			run(logins, rounds, true, s, B);
+			long precomputed = run(logins, rounds, true, s, B);
+
+			System.out.println("Logins: " + logins + ", password hashing rounds: " + rounds);
+			System.out.println("Baseline:           " + baseline + " us/login");
+			System.out.println("Shared parameters:  " + shared + " us/login");
+			System.out.println("Fixed-base table:   " + precomputed + " us/login (one-time setup: " + setup + " ms)");
+			System.out.println("CPU saved:          " + (baseline - precomputed) + " us/login");
+		} catch (Exception e) {
+			System.out.println("ERROR: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+}